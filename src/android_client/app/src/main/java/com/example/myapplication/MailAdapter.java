@@ -1,7 +1,9 @@
 package com.example.myapplication;
 
 import android.content.Context;
-import android.util.Log;
+import android.graphics.Typeface;
+import android.graphics.drawable.GradientDrawable;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,27 +12,92 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
-import com.example.myapplication.api.ApiClient;
 import com.example.myapplication.models.Mail;
 import com.example.myapplication.models.Label;
-
-import java.util.Date;
+import com.example.myapplication.models.OutboxEntry;
+import com.example.myapplication.utils.AppExecutors;
+import com.example.myapplication.utils.BindAllocationTracker;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder> {
 
-    private List<Mail> mails;
+    // Change payloads: rebind only the views that depend on what changed
+    static final Object PAYLOAD_STAR = "star";
+    static final Object PAYLOAD_STATE = "state"; // read / selection styling
+    static final Object PAYLOAD_LABELS = "labels";
+    private static final String NOT_SYNCED = "Not synced"; // Shown for a change the server rejected
+
+    private static final DiffUtil.ItemCallback<MailRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<MailRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MailRow oldRow, @NonNull MailRow newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MailRow oldRow, @NonNull MailRow newRow) {
+            return oldRow.sameContent(newRow)
+                    && oldRow.starred == newRow.starred
+                    && oldRow.unread == newRow.unread
+                    && oldRow.sameLabel(newRow);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull MailRow oldRow, @NonNull MailRow newRow) {
+            if (!oldRow.sameContent(newRow)) {
+                return null; // full rebind
+            }
+            Set<Object> payloads = new HashSet<>();
+            if (oldRow.starred != newRow.starred) payloads.add(PAYLOAD_STAR);
+            if (oldRow.unread != newRow.unread) payloads.add(PAYLOAD_STATE);
+            if (!oldRow.sameLabel(newRow)) payloads.add(PAYLOAD_LABELS);
+            return payloads;
+        }
+    };
+
+    // Rows are built and diffed off the main thread, one list at a time in submission order
+    private final Executor rowExecutor = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().compute());
+    private final Executor mainThread = AppExecutors.getInstance().main();
+    private final AsyncListDiffer<MailRow> differ = new AsyncListDiffer<>(
+            new AdapterListUpdateCallback(this),
+            new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).setBackgroundThreadExecutor(rowExecutor).build());
+    // Mail id -> adapter position of the committed list
+    private final Map<Long, Integer> positions = new HashMap<>();
+    private List<Mail> mails = Collections.emptyList(); // Last submitted mails
+    private List<MailRow> latestRows = Collections.emptyList(); // Last rows handed to the differ
+    private int submitGeneration = 0;
+
+    private final RowStyle style;
+    private final DateFormat timeFormat;
+    private MailRow.Factory rowFactory; // Only used on rowExecutor
+    private final BindAllocationTracker bindAllocations = new BindAllocationTracker("MailAdapter");
+
     private OnMailClickListener onMailClickListener;
     private OnStarClickListener onStarClickListener;
 
     private OnMailLongClickListener onMailLongClickListener;
     private OnSelectionChangedListener onSelectionChangedListener;
-    private Set<Integer> selectedMails = new HashSet<>();
+    // Keyed by primitive mail id so binding does not box
+    // Kept with the mail, so a selection outlives a change of the list it was made in
+    private final LongSparseArray<Mail> selectedMails = new LongSparseArray<>();
+    // Mail id -> outbox state of a change the server has not confirmed yet
+    private LongSparseArray<String> outboxStates = new LongSparseArray<>();
     private boolean isSelectionMode = false;
     private MailFolder currentFolder; // Add folder context
     private OnLabelMailClickListener onLabelMailClickListener;
@@ -58,21 +125,127 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
         void onLabelMailClick(Mail mail);
     }
 
-    public MailAdapter(List<Mail> mails, OnMailClickListener onMailClickListener, OnStarClickListener onStarClickListener) {
-        this.mails = mails;
+    // Colors resolved once instead of on every bind
+    private static final class RowStyle {
+        final int draftSubject;
+        final int sender, subject, time;
+        final int unreadSender, unreadSubject, unreadTime;
+        final int unreadBackground, selectedBackground, transparent;
+        final int fallbackLabel;
+
+        RowStyle(Context context) {
+            draftSubject = context.getColor(R.color.draft_indicator);
+            sender = context.getColor(R.color.mail_sender);
+            subject = context.getColor(R.color.mail_subject);
+            time = context.getColor(R.color.mail_time);
+            unreadSender = context.getColor(R.color.unread_mail_sender);
+            unreadSubject = context.getColor(R.color.unread_mail_subject);
+            unreadTime = context.getColor(R.color.unread_mail_time);
+            unreadBackground = context.getColor(R.color.unread_mail_background);
+            selectedBackground = context.getColor(R.color.selected_mail_background);
+            transparent = context.getColor(android.R.color.transparent);
+            fallbackLabel = context.getColor(R.color.primary);
+        }
+    }
+
+    public MailAdapter(Context context, OnMailClickListener onMailClickListener, OnStarClickListener onStarClickListener) {
         this.onMailClickListener = onMailClickListener;
         this.onStarClickListener = onStarClickListener;
         this.currentFolder = MailFolder.INBOX; // Default folder
+        this.style = new RowStyle(context);
+        // this will respect the user’s 12-/24-hour setting:
+        this.timeFormat = android.text.format.DateFormat.getTimeFormat(context);
+        this.rowFactory = newRowFactory();
+        setHasStableIds(true);
+    }
+
+    // Turn the per-bind allocation measurement on or off (logged under "BindAllocations")
+    public void setMeasureBindAllocations(boolean enabled) {
+        bindAllocations.setEnabled(enabled);
+    }
+
+    // Build the rows and diff them against the shown ones off the main thread.
+    // onCommitted runs once the rows are updated.
+    public void submitList(List<Mail> mails, Runnable onCommitted) {
+        this.mails = mails;
+        int generation = ++submitGeneration;
+        MailRow.Factory factory = rowFactory;
+        rowExecutor.execute(() -> {
+            List<MailRow> rows = new ArrayList<>(mails.size());
+            for (Mail mail : mails) {
+                rows.add(factory.build(mail));
+            }
+            mainThread.execute(() -> {
+                // A newer list was submitted meanwhile
+                if (generation != submitGeneration) return;
+                commitRows(rows, onCommitted);
+            });
+        });
+    }
+
+    // Rebuild the row of a mail that was changed in place (star, read).
+    // The row is built on rowExecutor like the others, then patched into the latest rows.
+    public void refreshMail(Mail mail) {
+        int generation = submitGeneration;
+        MailRow.Factory factory = rowFactory;
+        rowExecutor.execute(() -> {
+            MailRow row = factory.build(mail);
+            mainThread.execute(() -> {
+                // A newer list was submitted meanwhile and brings the mail itself
+                if (generation != submitGeneration) return;
+                int index = indexOfRow(latestRows, row.id);
+                if (index < 0) return;
+                List<MailRow> rows = new ArrayList<>(latestRows);
+                rows.set(index, row);
+                commitRows(rows, null);
+            });
+        });
+    }
+
+    private static int indexOfRow(List<MailRow> rows, long mailId) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).id == mailId) return i;
+        }
+        return -1;
     }
-    
+
+    private void commitRows(List<MailRow> rows, Runnable onCommitted) {
+        latestRows = rows;
+        differ.submitList(rows, () -> {
+            indexPositions();
+            if (onCommitted != null) onCommitted.run();
+        });
+    }
+
+    private void indexPositions() {
+        positions.clear();
+        List<MailRow> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            positions.put(current.get(i).id, i);
+        }
+    }
+
+    public int positionOf(long mailId) {
+        Integer position = positions.get(mailId);
+        return position != null ? position : RecyclerView.NO_POSITION;
+    }
+
+    private MailRow.Factory newRowFactory() {
+        return new MailRow.Factory(currentFolder, timeFormat, style.fallbackLabel, allLabels);
+    }
+
     // Add method to set the current folder
     public void setCurrentFolder(MailFolder folder) {
         this.currentFolder = folder;
-        notifyDataSetChanged(); // Refresh the display
+        // Names and avatars depend on the folder
+        rowFactory = newRowFactory();
+        submitList(mails, null);
     }
 
     public void setAllLabels(List<Label> labels) {
-        this.allLabels = labels;
+        this.allLabels = new ArrayList<>(labels);
+        rowFactory = newRowFactory();
+        submitList(mails, null);
     }
 
 
@@ -89,27 +262,44 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
         if (!isSelectionMode) {
             selectedMails.clear();
         }
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_STATE);
     }
 
     public boolean isSelectionMode() {
         return isSelectionMode;
     }
 
-    public void toggleSelection(int mailId) {
-        if (selectedMails.contains(mailId)) {
+    public void toggleSelection(Mail mail) {
+        long mailId = mail.getId();
+        if (selectedMails.indexOfKey(mailId) >= 0) {
             selectedMails.remove(mailId);
         } else {
-            selectedMails.add(mailId);
+            selectedMails.put(mailId, mail);
+        }
+        int position = positionOf(mailId);
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position, PAYLOAD_STATE);
         }
-        notifyDataSetChanged();
         if (onSelectionChangedListener != null) {
             onSelectionChangedListener.onSelectionChanged();
         }
     }
 
-    public Set<Integer> getSelectedMails() {
-        return new HashSet<>(selectedMails);
+    public Set<Long> getSelectedMails() {
+        Set<Long> ids = new HashSet<>(selectedMails.size());
+        for (int i = 0; i < selectedMails.size(); i++) {
+            ids.add(selectedMails.keyAt(i));
+        }
+        return ids;
+    }
+
+    // The selected mails, whichever list they were selected in
+    public List<Mail> getSelection() {
+        List<Mail> mails = new ArrayList<>(selectedMails.size());
+        for (int i = 0; i < selectedMails.size(); i++) {
+            mails.add(selectedMails.valueAt(i));
+        }
+        return mails;
     }
 
     public int getSelectedCount() {
@@ -118,7 +308,32 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
 
     public void clearSelection() {
         selectedMails.clear();
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_STATE);
+    }
+
+    // Restyle only the rows whose outbox state changed
+    public void setOutboxStates(Map<Long, String> states) {
+        LongSparseArray<String> old = outboxStates;
+        LongSparseArray<String> updated = new LongSparseArray<>(states.size());
+        for (Map.Entry<Long, String> entry : states.entrySet()) {
+            updated.put(entry.getKey(), entry.getValue());
+        }
+        outboxStates = updated;
+        for (int i = 0; i < old.size(); i++) {
+            long mailId = old.keyAt(i);
+            if (!Objects.equals(old.valueAt(i), updated.get(mailId))) restyle(mailId);
+        }
+        for (int i = 0; i < updated.size(); i++) {
+            long mailId = updated.keyAt(i);
+            if (old.indexOfKey(mailId) < 0) restyle(mailId);
+        }
+    }
+
+    private void restyle(long mailId) {
+        int position = positionOf(mailId);
+        if (position != RecyclerView.NO_POSITION) {
+            notifyItemChanged(position, PAYLOAD_STATE);
+        }
     }
 
     public void setOnLabelMailClickListener(OnLabelMailClickListener listener) {
@@ -134,13 +349,39 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull MailViewHolder holder, int position) {
-        Mail mail = mails.get(position);
-        holder.bind(mail);
+        MailRow row = differ.getCurrentList().get(position);
+        bindAllocations.beginBind();
+        holder.bind(row);
+        bindAllocations.endBind();
+        // Glide allocates its request, so the avatar stays outside the measurement
+        holder.loadAvatar(row);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MailViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        MailRow row = differ.getCurrentList().get(position);
+        for (Object payload : payloads) {
+            // The differ batches a row's changes into a set
+            if (payload instanceof Set) {
+                for (Object p : (Set<?>) payload) holder.bindPayload(row, p);
+            } else {
+                holder.bindPayload(row, payload);
+            }
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).id;
     }
 
     @Override
     public int getItemCount() {
-        return mails.size();
+        return differ.getCurrentList().size();
     }
 
     class MailViewHolder extends RecyclerView.ViewHolder {
@@ -155,6 +396,11 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
 
         private View unreadIndicator;
 
+        // Typefaces resolved once per holder
+        private final Typeface senderNormal, senderBold;
+        private final Typeface subjectNormal, subjectBold;
+        private final Typeface timeNormal, timeBold;
+
         public MailViewHolder(@NonNull View itemView) {
             super(itemView);
             senderAvatar = itemView.findViewById(R.id.iv_sender_avatar);
@@ -168,12 +414,19 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
 
             unreadIndicator = itemView.findViewById(R.id.unread_indicator);
 
+            senderNormal = Typeface.create(senderName.getTypeface(), Typeface.NORMAL);
+            senderBold = Typeface.create(senderName.getTypeface(), Typeface.BOLD);
+            subjectNormal = Typeface.create(subject.getTypeface(), Typeface.NORMAL);
+            subjectBold = Typeface.create(subject.getTypeface(), Typeface.BOLD);
+            timeNormal = Typeface.create(time.getTypeface(), Typeface.NORMAL);
+            timeBold = Typeface.create(time.getTypeface(), Typeface.BOLD);
+
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    Mail mail = mails.get(position);
+                    Mail mail = differ.getCurrentList().get(position).mail;
                     if (isSelectionMode) {
-                        toggleSelection(mail.getId());
+                        toggleSelection(mail);
                     } else if (onMailClickListener != null) {
                         onMailClickListener.onMailClick(mail);
                     }
@@ -183,7 +436,7 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
             itemView.setOnLongClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && onMailLongClickListener != null) {
-                    Mail mail = mails.get(position);
+                    Mail mail = differ.getCurrentList().get(position).mail;
                     onMailLongClickListener.onMailLongClick(mail);
                     return true;
                 }
@@ -193,206 +446,97 @@ public class MailAdapter extends RecyclerView.Adapter<MailAdapter.MailViewHolder
             starButton.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && onStarClickListener != null) {
-                    onStarClickListener.onStarClick(mails.get(position));
+                    onStarClickListener.onStarClick(differ.getCurrentList().get(position).mail);
                 }
             });
 
             labelMailButton.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION && onLabelMailClickListener != null) {
-                    onLabelMailClickListener.onLabelMailClick(mails.get(position));
+                    onLabelMailClickListener.onLabelMailClick(differ.getCurrentList().get(position).mail);
                 }
             });
 
 
         }
 
-        public void bind(Mail mail) {
-            // Determine what name to display based on folder and mail status
-            String displayName;
-            if ("draft".equals(mail.getStatus())) {
-                // For drafts, show just the recipient name (no prefix)
-                displayName = mail.getDisplayTo();
-            } else if (currentFolder == MailFolder.SENT) {
-                // In Sent folder, show recipient name with "To:" prefix
-                displayName = "To: " + mail.getDisplayTo();
-            } else {
-                // In other folders, show sender name
-                displayName = mail.getDisplayFrom();
-            }
-            senderName.setText(displayName);
-
-            // Set time
-            long ts = mail.getTimestamp();
-            if (ts > 0) {
-                Date d = new Date(ts);
-                // this will respect the user’s 12-/24-hour setting:
-                java.text.DateFormat tf = android.text.format.DateFormat.getTimeFormat(itemView.getContext());
-                time.setText(tf.format(d));
-            } else {
-                time.setText("");
-            }
-
-            // Set subject - show "Draft" in red if it's a draft
-            if ("draft".equals(mail.getStatus())) {
-                subject.setText("Draft");
-                subject.setTextColor(itemView.getContext().getColor(R.color.draft_indicator));
-            } else {
-                subject.setText(mail.getDisplaySubject());
-                // Subject color will be set later based on read/unread status
-            }
+        // Plain field assignment; every string and color comes resolved in the row
+        public void bind(MailRow row) {
+            senderName.setText(row.displayName);
+            time.setText(row.time);
+            subject.setText(row.subject);
 
-            // Set body preview
-            if (mail.getBodyPreview() != null && !mail.getBodyPreview().trim().isEmpty()) {
-                bodyPreview.setText(mail.getBodyPreview());
+            if (row.bodyPreview != null) {
+                bodyPreview.setText(row.bodyPreview);
                 bodyPreview.setVisibility(View.VISIBLE);
             } else {
                 bodyPreview.setVisibility(View.GONE);
             }
 
-            // Set star icon
-            starButton.setImageResource(mail.isStarred() ? R.drawable.ic_star_filled : R.drawable.ic_star_outline);
-
-            // Label badge logic
-            if (mail.getLabelIds() != null && !mail.getLabelIds().isEmpty() && allLabels != null) {
-                String labelId = mail.getLabelIds().get(0); // Show first label only
-                Label found = null;
-                for (Label l : allLabels) {
-                    if (l.getId().equals(labelId)) {
-                        found = l;
-                        break;
-                    }
-                }
-                if (found != null) {
-                    labelBadge.setText(found.getName());
-                    try {
-                        int color = android.graphics.Color.parseColor(found.getColor());
-                        android.graphics.drawable.GradientDrawable bg = (android.graphics.drawable.GradientDrawable) labelBadge.getBackground();
-                        bg.setColor(color);
-                    } catch (Exception e) {
-                        // fallback to default
-                        android.graphics.drawable.GradientDrawable bg = (android.graphics.drawable.GradientDrawable) labelBadge.getBackground();
-                        bg.setColor(itemView.getContext().getColor(R.color.primary));
-                    }
-                    labelBadge.setVisibility(View.VISIBLE);
-                } else {
-                    labelBadge.setVisibility(View.GONE);
-                }
+            bindStar(row);
+            bindLabels(row);
+            bindState(row);
+        }
+
+        void bindPayload(MailRow row, Object payload) {
+            if (payload == PAYLOAD_STAR) {
+                bindStar(row);
+            } else if (payload == PAYLOAD_STATE) {
+                bindState(row);
+            } else if (payload == PAYLOAD_LABELS) {
+                bindLabels(row);
+            }
+        }
+
+        private void bindStar(MailRow row) {
+            starButton.setImageResource(row.starred ? R.drawable.ic_star_filled : R.drawable.ic_star_outline);
+        }
+
+        private void bindLabels(MailRow row) {
+            if (row.labelName != null) {
+                labelBadge.setText(row.labelName);
+                ((GradientDrawable) labelBadge.getBackground()).setColor(row.labelColor);
+                labelBadge.setVisibility(View.VISIBLE);
             } else {
                 labelBadge.setVisibility(View.GONE);
             }
+        }
+
+        // Read, draft, selection and outbox styling of the row
+        private void bindState(MailRow row) {
+            boolean isSelected = selectedMails.indexOfKey(row.id) >= 0;
+            String outboxState = outboxStates.get(row.id);
 
-            // Handle selection mode visual state
-            boolean isSelected = selectedMails.contains(mail.getId());
-            boolean isUnread = !mail.isRead();
-            boolean isDraft = "draft".equals(mail.getStatus());
-            
             if (isSelectionMode) {
                 itemView.setAlpha(isSelected ? 0.7f : 1.0f);
-                itemView.setBackgroundColor(isSelected ? 
-                    itemView.getContext().getColor(R.color.selected_mail_background) : 
-                    itemView.getContext().getColor(android.R.color.transparent));
+                itemView.setBackgroundColor(isSelected ? style.selectedBackground : style.transparent);
             } else {
-                itemView.setAlpha(1.0f);
+                // Dimmed until the server has the change
+                itemView.setAlpha(OutboxEntry.STATE_PENDING.equals(outboxState) ? 0.6f : 1.0f);
                 // Apply unread styling when not in selection mode and not a draft
-                if (isUnread && !isDraft) {
-                    itemView.setBackgroundColor(itemView.getContext().getColor(R.color.unread_mail_background));
-                } else {
-                    itemView.setBackgroundColor(itemView.getContext().getColor(android.R.color.transparent));
-                }
-            }
-            
-            // Apply text styling based on draft/unread status
-            if (isDraft) {
-                // Drafts: normal styling except subject is already set to red "Draft"
-                unreadIndicator.setVisibility(View.GONE);
-                senderName.setTextColor(itemView.getContext().getColor(R.color.mail_sender));
-                senderName.setTypeface(senderName.getTypeface(), android.graphics.Typeface.NORMAL);
-                // subject color is already set to red above
-                subject.setTypeface(subject.getTypeface(), android.graphics.Typeface.NORMAL);
-                time.setTextColor(itemView.getContext().getColor(R.color.mail_time));
-                time.setTypeface(time.getTypeface(), android.graphics.Typeface.NORMAL);
-            } else {
-                // Non-draft emails: apply unread styling if unread and not in selection mode
-                if (isUnread && !isSelectionMode) {
-                    senderName.setTextColor(itemView.getContext().getColor(R.color.unread_mail_sender));
-                    senderName.setTypeface(senderName.getTypeface(), android.graphics.Typeface.BOLD);
-                    subject.setTextColor(itemView.getContext().getColor(R.color.unread_mail_subject));
-                    subject.setTypeface(subject.getTypeface(), android.graphics.Typeface.BOLD);
-                    time.setTextColor(itemView.getContext().getColor(R.color.unread_mail_time));
-                    time.setTypeface(time.getTypeface(), android.graphics.Typeface.BOLD);
-                    unreadIndicator.setVisibility(View.VISIBLE);
-                } else {
-                    senderName.setTextColor(itemView.getContext().getColor(R.color.mail_sender));
-                    senderName.setTypeface(senderName.getTypeface(), android.graphics.Typeface.NORMAL);
-                    subject.setTextColor(itemView.getContext().getColor(R.color.mail_subject));
-                    subject.setTypeface(subject.getTypeface(), android.graphics.Typeface.NORMAL);
-                    time.setTextColor(itemView.getContext().getColor(R.color.mail_time));
-                    time.setTypeface(time.getTypeface(), android.graphics.Typeface.NORMAL);
-                    unreadIndicator.setVisibility(View.GONE);
-                }
+                itemView.setBackgroundColor(row.unread && !row.draft ? style.unreadBackground : style.transparent);
             }
 
-            // Load avatar based on folder context
-            loadAvatar(mail, senderAvatar);
+            // Drafts keep normal styling with a red "Draft" subject
+            boolean bold = !row.draft && row.unread && !isSelectionMode;
+            unreadIndicator.setVisibility(bold ? View.VISIBLE : View.GONE);
+            senderName.setTextColor(bold ? style.unreadSender : style.sender);
+            senderName.setTypeface(bold ? senderBold : senderNormal);
+            subject.setTextColor(row.draft ? style.draftSubject : bold ? style.unreadSubject : style.subject);
+            subject.setTypeface(bold ? subjectBold : subjectNormal);
+            time.setTextColor(bold ? style.unreadTime : style.time);
+            time.setTypeface(bold ? timeBold : timeNormal);
+            time.setText(OutboxEntry.STATE_FAILED.equals(outboxState) ? NOT_SYNCED : row.time);
         }
 
-
-
-        private void loadAvatar(Mail mail, ImageView avatarView) {
-            Context context = avatarView.getContext();
-
-            String imageUrl = mail.getFromPicture();
-
-            if (imageUrl != null && !imageUrl.trim().isEmpty()) {
-                if (!imageUrl.startsWith("http")) {
-                    // Prepend your base URL
-                    imageUrl = ApiClient.getInstance().getBaseUrl()
-                            + (imageUrl.startsWith("/") ? imageUrl.substring(1) : imageUrl);
-                }
-                Log.d("MailAdapter", "Loading avatar: " + imageUrl);
-                Glide.with(context)
-                        .load(imageUrl)
-                        .placeholder(R.drawable.ic_account_circle)
-                        .error(R.drawable.ic_account_circle)
-                        .circleCrop()
-                        .into(avatarView);
-                return;
-            }
-
-            String name;
-            if (currentFolder == MailFolder.SENT) {
-                name = mail.getToName();
-                if (name == null || name.trim().isEmpty()) {
-                    name = mail.getTo();
-                    if (name != null && name.contains("@")) {
-                        name = name.substring(0, name.indexOf("@"));
-                    }
-                }
-            } else {
-                name = mail.getFromName();
-                if (name == null || name.trim().isEmpty()) {
-                    name = mail.getFrom();
-                    if (name != null && name.contains("@")) {
-                        name = name.substring(0, name.indexOf("@"));
-                    }
-                }
-            }
-            if (name == null || name.trim().isEmpty()) {
-                name = "User";
-            }
-
-            String avatarUrl = "https://ui-avatars.com/api/?name=" +
-                    name.replace(" ", "+") +
-                    "&background=f69fd5&color=fff&size=80";
-
-            Glide.with(context)
-                    .load(avatarUrl)
+        void loadAvatar(MailRow row) {
+            Glide.with(senderAvatar.getContext())
+                    .load(row.avatarUrl)
                     .placeholder(R.drawable.ic_account_circle)
                     .error(R.drawable.ic_account_circle)
                     .circleCrop()
-                    .into(avatarView);
+                    .into(senderAvatar);
         }
 
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,28 @@
 package com.example.myapplication;
 
 public enum MailFolder {
-    INBOX("Inbox"),
-    SENT("Sent"),
-    DRAFTS("Drafts"),
-    SPAM("Spam"),
-    TRASH("Trash"),
-    STARRED("Starred"),
-    ALL_MAIL("All Doar");
+    INBOX("Inbox", "inbox"),
+    SENT("Sent", "sent"),
+    DRAFTS("Drafts", "draft"),
+    SPAM("Spam", "spam"),
+    TRASH("Trash", "trash"),
+    STARRED("Starred", null),
+    ALL_MAIL("All Doar", null);
 
     private final String displayName;
+    // Folder name stored on the server view (null for virtual folders)
+    private final String serverKey;
 
-    MailFolder(String displayName) {
+    MailFolder(String displayName, String serverKey) {
         this.displayName = displayName;
+        this.serverKey = serverKey;
     }
 
     public String getDisplayName() {
         return displayName;
     }
-} 
\ No newline at end of file
+
+    public String getServerKey() {
+        return serverKey;
+    }
+}
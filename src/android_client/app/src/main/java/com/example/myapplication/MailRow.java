@@ -0,0 +1,161 @@
+package com.example.myapplication;
+
+import android.graphics.Color;
+
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.models.Label;
+import com.example.myapplication.models.Mail;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Everything a mail row shows, resolved up front so binding is plain field assignment.
+ * Rows are immutable; a changed mail gets a new row.
+ */
+public final class MailRow {
+    public final Mail mail; // Source of the row, handed to the click listeners
+    public final long id;
+    public final String displayName;
+    public final String time;
+    public final String subject;
+    public final String bodyPreview; // null when there is none
+    public final boolean draft;
+    public final boolean unread;
+    public final boolean starred;
+    public final String labelName; // null when the mail has no known label
+    public final int labelColor;
+    public final String avatarUrl;
+
+    private MailRow(Mail mail, String displayName, String time, String subject, String bodyPreview,
+                    String labelName, int labelColor, String avatarUrl) {
+        this.mail = mail;
+        this.id = mail.getId();
+        this.displayName = displayName;
+        this.time = time;
+        this.subject = subject;
+        this.bodyPreview = bodyPreview;
+        this.draft = "draft".equals(mail.getStatus());
+        this.unread = !mail.isRead();
+        this.starred = mail.isStarred();
+        this.labelName = labelName;
+        this.labelColor = labelColor;
+        this.avatarUrl = avatarUrl;
+    }
+
+    // Same text, avatar and draft state; the flags below have their own payloads
+    boolean sameContent(MailRow other) {
+        return draft == other.draft
+                && Objects.equals(displayName, other.displayName)
+                && Objects.equals(time, other.time)
+                && Objects.equals(subject, other.subject)
+                && Objects.equals(bodyPreview, other.bodyPreview)
+                && Objects.equals(avatarUrl, other.avatarUrl);
+    }
+
+    boolean sameLabel(MailRow other) {
+        return labelColor == other.labelColor && Objects.equals(labelName, other.labelName);
+    }
+
+    /**
+     * Builds rows for one folder and label set. Safe to use from one background thread at a time.
+     */
+    public static final class Factory {
+        private final MailFolder folder;
+        private final DateFormat timeFormat;
+        private final int fallbackLabelColor;
+        private final Map<String, Label> labelsById = new HashMap<>();
+        private final Map<String, Integer> labelColors = new HashMap<>();
+
+        // timeFormat is cloned, DateFormat is not thread safe
+        public Factory(MailFolder folder, DateFormat timeFormat, int fallbackLabelColor, List<Label> labels) {
+            this.folder = folder;
+            this.timeFormat = (DateFormat) timeFormat.clone();
+            this.fallbackLabelColor = fallbackLabelColor;
+            if (labels != null) {
+                for (Label label : labels) {
+                    labelsById.put(label.getId(), label);
+                    labelColors.put(label.getId(), parseColor(label.getColor()));
+                }
+            }
+        }
+
+        public MailRow build(Mail mail) {
+            String labelName = null;
+            int labelColor = fallbackLabelColor;
+            if (mail.getLabelIds() != null && !mail.getLabelIds().isEmpty()) {
+                String labelId = mail.getLabelIds().get(0); // Show first label only
+                Label label = labelsById.get(labelId);
+                if (label != null) {
+                    labelName = label.getName();
+                    labelColor = labelColors.get(labelId);
+                }
+            }
+
+            String body = mail.getBodyPreview();
+            return new MailRow(
+                    mail,
+                    displayName(mail),
+                    mail.getTimestamp() > 0 ? timeFormat.format(new Date(mail.getTimestamp())) : "",
+                    // Drafts show "Draft" in red instead of their subject
+                    "draft".equals(mail.getStatus()) ? "Draft" : mail.getDisplaySubject(),
+                    body != null && !body.trim().isEmpty() ? body : null,
+                    labelName,
+                    labelColor,
+                    avatarUrl(mail));
+        }
+
+        private String displayName(Mail mail) {
+            if ("draft".equals(mail.getStatus())) {
+                // For drafts, show just the recipient name (no prefix)
+                return mail.getDisplayTo();
+            } else if (folder == MailFolder.SENT) {
+                // In Sent folder, show recipient name with "To:" prefix
+                return "To: " + mail.getDisplayTo();
+            }
+            // In other folders, show sender name
+            return mail.getDisplayFrom();
+        }
+
+        private String avatarUrl(Mail mail) {
+            String imageUrl = mail.getFromPicture();
+            if (imageUrl != null && !imageUrl.trim().isEmpty()) {
+                if (imageUrl.startsWith("http")) {
+                    return imageUrl;
+                }
+                return ApiClient.getInstance().getBaseUrl()
+                        + (imageUrl.startsWith("/") ? imageUrl.substring(1) : imageUrl);
+            }
+
+            String name = folder == MailFolder.SENT
+                    ? nameOrUser(mail.getToName(), mail.getTo())
+                    : nameOrUser(mail.getFromName(), mail.getFrom());
+            return "https://ui-avatars.com/api/?name=" +
+                    name.replace(" ", "+") +
+                    "&background=f69fd5&color=fff&size=80";
+        }
+
+        private static String nameOrUser(String name, String address) {
+            if (name == null || name.trim().isEmpty()) {
+                name = address;
+                if (name != null && name.contains("@")) {
+                    name = name.substring(0, name.indexOf("@"));
+                }
+            }
+            return name == null || name.trim().isEmpty() ? "User" : name;
+        }
+
+        private int parseColor(String color) {
+            try {
+                return Color.parseColor(color);
+            } catch (Exception e) {
+                // fallback to default
+                return fallbackLabelColor;
+            }
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.myapplication;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.app.Dialog;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.Gravity;
@@ -26,13 +28,13 @@ import com.example.myapplication.activities.LoginActivity;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.example.myapplication.adapters.LabelAdapter;
 import com.example.myapplication.api.ApiClient;
-import com.example.myapplication.api.ApiService;
 import com.example.myapplication.databinding.ActivityMainBinding;
 import com.example.myapplication.dialogs.ColorPickerDialog;
 import com.example.myapplication.dialogs.DeleteLabelDialog;
@@ -41,23 +43,23 @@ import com.example.myapplication.dialogs.LabelEmailDialog;
 import com.example.myapplication.dialogs.LabelOptionsBottomSheet;
 import com.example.myapplication.dialogs.MailDetailDialog;
 import com.example.myapplication.dialogs.NewLabelDialog;
+import com.example.myapplication.labels.LabelStore;
 import com.example.myapplication.models.Label;
 import com.example.myapplication.models.Mail;
 import com.example.myapplication.models.User;
+import com.example.myapplication.repository.MailRepository;
+import com.example.myapplication.repository.Outbox;
 import com.example.myapplication.utils.AuthManager;
+import com.example.myapplication.viewModel.MailboxViewModel;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.stream.Collectors;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 import android.util.Log;
 import android.graphics.Rect;
@@ -81,15 +83,15 @@ public class MainActivity extends AppCompatActivity {
     private RecyclerView labelsRecyclerView;
     private LabelAdapter labelAdapter;
     private List<Label> labels = new ArrayList<>();
+    private LabelStore labelStore;
     private ImageView btnAddLabel;
 
-    private ApiService apiService;
     private AuthManager authManager;
-    private User currentUser;
-    private List<Mail> allMails = new ArrayList<>();
-    private List<Mail> filteredMails = new ArrayList<>();
+    private MailRepository mailRepository;
+    private Outbox outbox;
+    // Folder, label, search and rows; survives rotation, so this activity only observes it
+    private MailboxViewModel viewModel;
 
-    private MailFolder currentFolder = MailFolder.INBOX;
     private View currentSelectedNavItem;
 
     // Selection mode fields
@@ -113,8 +115,8 @@ public class MainActivity extends AppCompatActivity {
         initializeViews();
         setupAPI();
         setupUI();
-        loadUserProfile();
-        loadMails();
+        observeViewModel();
+        viewModel.start();
     }
 
     private void initializeViews() {
@@ -131,7 +133,7 @@ public class MainActivity extends AppCompatActivity {
         binding.btnCloseSelection.setOnClickListener(v -> exitSelectionMode());
         binding.btnDeleteMails.setOnClickListener(v -> deleteSelectedMails());
         binding.btnDeleteMails.setOnLongClickListener(v -> {
-            if (currentFolder == MailFolder.TRASH && !isSelectionMode) {
+            if (viewModel.getCurrentFolder() == MailFolder.TRASH && !isSelectionMode) {
                 emptyTrash();
                 return true;
             }
@@ -164,7 +166,10 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void setupAPI() {
-        apiService = ApiClient.getInstance().getApiService();
+        mailRepository = MailRepository.getInstance(this);
+        outbox = Outbox.getInstance(this);
+        labelStore = LabelStore.getInstance(this);
+        viewModel = new ViewModelProvider(this).get(MailboxViewModel.class);
     }
 
     private void navigateToLogin() {
@@ -175,8 +180,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void logout() {
-        // Clear authentication data
-        authManager.logout();
+        viewModel.logout();
 
         // Navigate to login
         navigateToLogin();
@@ -201,14 +205,28 @@ public class MainActivity extends AppCompatActivity {
 
 
     private void setupRecyclerView() {
-        mailAdapter = new MailAdapter(filteredMails, this::onMailClick, this::onStarClick);
+        mailAdapter = new MailAdapter(this, this::onMailClick, this::onStarClick);
+        // The only full reload; everything else patches the local store
+        binding.swipeRefresh.setOnRefreshListener(viewModel::reloadFromServer);
         mailAdapter.setAllLabels(labels); // Pass labels list for badge lookup
         mailAdapter.setOnMailLongClickListener(this::onMailLongClick);
         mailAdapter.setOnSelectionChangedListener(this::updateSelectedCount);
-        mailAdapter.setCurrentFolder(currentFolder); // Set initial folder
+        mailAdapter.setCurrentFolder(viewModel.getCurrentFolder()); // Set initial folder
         mailAdapter.setOnLabelMailClickListener(this::onLabelMailClick);
+        // Debug builds log allocations per bind under "BindAllocations"
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        mailAdapter.setMeasureBindAllocations(debuggable);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(mailAdapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView rv, int dx, int dy) {
+                LinearLayoutManager lm = (LinearLayoutManager) rv.getLayoutManager();
+                viewModel.onScrolled(lm.findFirstVisibleItemPosition(),
+                        lm.findLastVisibleItemPosition(),
+                        mailAdapter.getItemCount());
+            }
+        });
     }
 
     private void setupSearchBar() {
@@ -219,7 +237,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterMails(s.toString());
+                viewModel.setQuery(s.toString(), true);
                 binding.btnClearSearch.setVisibility(s.length() > 0 ? View.VISIBLE : View.GONE);
             }
 
@@ -229,8 +247,8 @@ public class MainActivity extends AppCompatActivity {
         });
 
         binding.btnClearSearch.setOnClickListener(v -> {
+            viewModel.setQuery("", false);
             binding.etSearch.setText("");
-            filterMails("");
         });
     }
 
@@ -265,11 +283,13 @@ public class MainActivity extends AppCompatActivity {
             // Setup labels functionality
             setupLabelsSection(navDrawer);
 
-            // Set initial selection
-            View inboxItem = navDrawer.findViewById(R.id.nav_inbox);
-            if (inboxItem != null) {
-                selectNavigationItem(inboxItem, MailFolder.INBOX);
+            // Mark what the view model has open, which after a rotation need not be the inbox
+            View openItem = navDrawer.findViewById(navItemId(viewModel.getCurrentFolder()));
+            if (openItem != null && viewModel.getCurrentLabel() == null) {
+                highlightNavigationItem(openItem);
             }
+            Label openLabel = viewModel.getCurrentLabel();
+            setTitle(openLabel != null ? openLabel.getName() : viewModel.getCurrentFolder().getDisplayName());
         }
     }
 
@@ -284,6 +304,22 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void selectNavigationItem(View item, MailFolder folder) {
+        highlightNavigationItem(item);
+
+        // Update adapter with current folder context
+        if (mailAdapter != null) {
+            mailAdapter.setCurrentFolder(folder);
+        }
+
+        // Switching folders clears the search; the view model already dropped the query
+        viewModel.selectFolder(folder, recyclerView.getLayoutManager().onSaveInstanceState());
+        binding.etSearch.setText("");
+
+        // Update action bar title
+        setTitle(folder.getDisplayName());
+    }
+
+    private void highlightNavigationItem(View item) {
         // Clear previous selection
         if (currentSelectedNavItem != null) {
             currentSelectedNavItem.setBackgroundResource(android.R.color.transparent);
@@ -292,18 +328,18 @@ public class MainActivity extends AppCompatActivity {
         // Set new selection
         currentSelectedNavItem = item;
         item.setBackgroundResource(R.drawable.nav_item_selected);
+    }
 
-        currentFolder = folder;
-
-        // Update adapter with current folder context
-        if (mailAdapter != null) {
-            mailAdapter.setCurrentFolder(folder);
+    private static int navItemId(MailFolder folder) {
+        switch (folder) {
+            case SENT: return R.id.nav_sent;
+            case DRAFTS: return R.id.nav_drafts;
+            case SPAM: return R.id.nav_spam;
+            case TRASH: return R.id.nav_trash;
+            case STARRED: return R.id.nav_starred;
+            case ALL_MAIL: return R.id.nav_all_mail;
+            default: return R.id.nav_inbox;
         }
-
-        loadMailsForFolder(folder);
-
-        // Update action bar title
-        setTitle(folder.getDisplayName());
     }
 
     private void setupLabelsSection(View navDrawer) {
@@ -326,17 +362,7 @@ public class MainActivity extends AppCompatActivity {
                 view.setBackgroundResource(R.drawable.nav_item_selected);
                 currentSelectedNavItem = view;
 
-                // Filter mails for this label
-                filteredMails.clear();
-                for (Mail mail : allMails) {
-                    if (mail.getLabelIds() != null && mail.getLabelIds().contains(label.getId())) {
-                        filteredMails.add(mail);
-                    }
-                }
-                mailAdapter.notifyDataSetChanged();
-                // Update title & close drawer
-                setTitle(label.getName());
-                drawerLayout.closeDrawer(GravityCompat.START);
+                onLabelClick(label);
             });
             labelAdapter.setOnLabelEditClickListener(this::onLabelEditClick);
         }
@@ -345,75 +371,23 @@ public class MainActivity extends AppCompatActivity {
             btnAddLabel.setOnClickListener(v -> showNewLabelDialog());
         }
 
-        // Load labels from server
-        loadLabels();
+        viewModel.getLabels().observe(this, this::onLabelsChanged);
     }
 
-    private void loadLabels() {
-        apiService.getLabels(authManager.getBearerToken()).enqueue(new Callback<List<Label>>() {
-            @Override
-            public void onResponse(Call<List<Label>> call, Response<List<Label>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    labels.clear();
-                    labels.addAll(response.body());
-                    if (labelAdapter != null) {
-                        labelAdapter.notifyDataSetChanged();
-                    }
-                    if (mailAdapter != null) {
-                        mailAdapter.setAllLabels(labels);
-                        mailAdapter.notifyDataSetChanged();
-                    }
-                } else {
-                    // Load demo labels for testing
-                    loadDemoLabels();
-                }
-            }
-
-            @Override
-            public void onFailure(Call<List<Label>> call, Throwable t) {
-                // Load demo labels for testing
-                loadDemoLabels();
-            }
-        });
-    }
-
-    private void loadDemoLabels() {
+    private void onLabelsChanged(List<Label> newLabels) {
         labels.clear();
-
-        Label workLabel = new Label();
-        workLabel.setId("1");
-        workLabel.setName("Work");
-        workLabel.setColor("#FF4444");
-        labels.add(workLabel);
-
-        Label personalLabel = new Label();
-        personalLabel.setId("2");
-        personalLabel.setName("Personal");
-        personalLabel.setColor("#00C851");
-        labels.add(personalLabel);
-
-        Label importantLabel = new Label();
-        importantLabel.setId("3");
-        importantLabel.setName("Important");
-        importantLabel.setColor("#FF8800");
-        labels.add(importantLabel);
-
+        labels.addAll(newLabels);
         if (labelAdapter != null) {
             labelAdapter.notifyDataSetChanged();
         }
+        if (mailAdapter != null) {
+            mailAdapter.setAllLabels(labels);
+        }
     }
 
     private void onLabelClick(Label label) {
         // Filter mails by label
-        filteredMails.clear();
-        for (Mail mail : allMails) {
-            if (mail.getLabelIds() != null && mail.getLabelIds().contains(label.getId())) {
-                filteredMails.add(mail);
-            }
-        }
-        if (mailAdapter != null) {
-            mailAdapter.notifyDataSetChanged();
-        }
+        viewModel.selectLabel(label);
         setTitle(label.getName()); // Update action bar title
         drawerLayout.closeDrawer(GravityCompat.START);
     }
@@ -467,305 +441,110 @@ public class MainActivity extends AppCompatActivity {
 
     // This method is called when a new label is created from the dialog
     private void createLabel(String name, String color, String parentId) {
-        // Always send null for parentId unless you support nested labels
-        ApiService.CreateLabelRequest request = new ApiService.CreateLabelRequest(name, color, parentId);
-        apiService.createLabel(authManager.getBearerToken(), request).enqueue(new Callback<Label>() {
+        labelStore.create(authManager.getBearerToken(), name, color, parentId, new LabelStore.ResultCallback<Label>() {
             @Override
-            public void onResponse(Call<Label> call, Response<Label> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    loadLabels();
-                    showError("Label created successfully");
-                } else {
-                    showError("Failed to create label");
-                }
+            public void onSuccess(Label label) {
+                showError("Label created successfully");
             }
 
             @Override
-            public void onFailure(Call<Label> call, Throwable t) {
-                showError("Network error: " + t.getMessage());
+            public void onError(String message) {
+                showError("Failed to create label");
             }
         });
     }
 
     private void updateLabel(String labelId, String newName, String color) {
-        ApiService.UpdateLabelRequest request = new ApiService.UpdateLabelRequest(newName, color, null);
-
-        apiService.updateLabel(authManager.getBearerToken(), labelId, request).enqueue(new Callback<Label>() {
+        labelStore.update(authManager.getBearerToken(), labelId, newName, color, new LabelStore.ResultCallback<Label>() {
             @Override
-            public void onResponse(Call<Label> call, Response<Label> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    // Update local label
-                    for (int i = 0; i < labels.size(); i++) {
-                        if (labels.get(i).getId().equals(labelId)) {
-                            labels.set(i, response.body());
-                            break;
-                        }
-                    }
-                    if (labelAdapter != null) {
-                        labelAdapter.notifyDataSetChanged();
-                    }
-                    showError("Label updated successfully");
-                } else {
-                    // Log error details
-                    String errorBody = "";
-                    try {
-                        if (response.errorBody() != null) {
-                            errorBody = response.errorBody().string();
-                        }
-                    } catch (Exception e) {
-                        errorBody = "Error reading error body: " + e.getMessage();
-                    }
-                    Log.e("LabelUpdate", "Failed to update label. Code: " + response.code() + ", Error: " + errorBody);
-                    showError("Failed to update label");
-                }
+            public void onSuccess(Label label) {
+                showError("Label updated successfully");
             }
 
             @Override
-            public void onFailure(Call<Label> call, Throwable t) {
-                Log.e("LabelUpdate", "Network error: " + t.getMessage());
-                showError("Network error: " + t.getMessage());
+            public void onError(String message) {
+                Log.e("LabelUpdate", "Failed to update label: " + message);
+                showError("Failed to update label");
             }
         });
     }
 
     private void updateLabelColor(String labelId, String color) {
-        ApiService.ColorRequest request = new ApiService.ColorRequest(color);
-
-        apiService.updateLabelColor(authManager.getBearerToken(), labelId, request).enqueue(new Callback<Label>() {
+        labelStore.updateColor(authManager.getBearerToken(), labelId, color, new LabelStore.ResultCallback<Label>() {
             @Override
-            public void onResponse(Call<Label> call, Response<Label> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    // Update local label
-                    for (int i = 0; i < labels.size(); i++) {
-                        if (labels.get(i).getId().equals(labelId)) {
-                            labels.set(i, response.body());
-                            break;
-                        }
-                    }
-                    if (labelAdapter != null) {
-                        labelAdapter.notifyDataSetChanged();
-                    }
-                    showError("Label color updated successfully");
-                } else {
-                    showError("Failed to update label color");
-                }
+            public void onSuccess(Label label) {
+                showError("Label color updated successfully");
             }
 
             @Override
-            public void onFailure(Call<Label> call, Throwable t) {
-                showError("Network error: " + t.getMessage());
+            public void onError(String message) {
+                showError("Failed to update label color");
             }
         });
     }
 
     private void deleteLabel(String labelId) {
-        apiService.deleteLabel(authManager.getBearerToken(), labelId).enqueue(new Callback<ApiService.ApiResponse>() {
+        labelStore.delete(authManager.getBearerToken(), labelId, new LabelStore.ResultCallback<Void>() {
             @Override
-            public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                if (response.isSuccessful()) {
-                    // Remove from local list
-                    labels.removeIf(label -> label.getId().equals(labelId));
-                    if (labelAdapter != null) {
-                        labelAdapter.notifyDataSetChanged();
-                    }
-                    showError("Label deleted successfully");
-                } else {
-                    showError("Failed to delete label");
-                }
+            public void onSuccess(Void result) {
+                showError("Label deleted successfully");
             }
 
             @Override
-            public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                showError("Network error: " + t.getMessage());
+            public void onError(String message) {
+                showError(message);
             }
         });
     }
 
-    private void filterMails(String query) {
-        filteredMails.clear();
-
-        if (query.isEmpty()) {
-            filteredMails.addAll(allMails);
-        } else {
-            String searchQuery = query.toLowerCase().trim();
-            for (Mail mail : allMails) {
-                if (mailMatchesQuery(mail, searchQuery)) {
-                    filteredMails.add(mail);
-                }
-            }
-        }
-
-        mailAdapter.notifyDataSetChanged();
-        updateEmptyState();
-    }
-
-    private boolean mailMatchesQuery(Mail mail, String query) {
-        return (mail.getFrom() != null && mail.getFrom().toLowerCase().contains(query)) ||
-                (mail.getFromName() != null && mail.getFromName().toLowerCase().contains(query)) ||
-                (mail.getSubject() != null && mail.getSubject().toLowerCase().contains(query)) ||
-                (mail.getBodyPreview() != null && mail.getBodyPreview().toLowerCase().contains(query)) ||
-                (mail.getTo() != null && mail.getTo().toLowerCase().contains(query));
-    }
-
-    private void loadUserProfile() {
-        showLoading(true);
-
-        apiService.getCurrentUser(authManager.getBearerToken()).enqueue(new Callback<ApiService.UserResponse>() {
-            @Override
-            public void onResponse(Call<ApiService.UserResponse> call, Response<ApiService.UserResponse> response) {
-                showLoading(false);
-                if (response.isSuccessful() && response.body() != null) {
-                    currentUser = response.body().getUser();
-                } else {
-                    authManager.logout();
-                    navigateToLogin();
-                    return;
-                }
+    private void observeViewModel() {
+        viewModel.getShownMails().observe(this, mails ->
+                mailAdapter.submitList(mails, () -> {
+                    updateEmptyState();
+                    Parcelable scrollState = viewModel.takePendingScrollState();
+                    if (scrollState != null) {
+                        // Back to a cached folder: same rows, same place
+                        recyclerView.getLayoutManager().onRestoreInstanceState(scrollState);
+                    }
+                }));
+        viewModel.getRefreshing().observe(this, refreshing -> {
+            if (refreshing) {
+                if (viewModel.getLoadedMails().isEmpty()) showLoading(true);
+            } else {
+                binding.swipeRefresh.setRefreshing(false);
+                updateEmptyState();
             }
-
-            @Override
-            public void onFailure(Call<ApiService.UserResponse> call, Throwable t) {
-                authManager.logout();
+        });
+        viewModel.getOutboxStates().observe(this, mailAdapter::setOutboxStates);
+        viewModel.getErrorMessage().observe(this, message -> {
+            if (message == null || message.isEmpty()) return;
+            showError(message);
+            viewModel.onErrorShown();
+        });
+        viewModel.getSessionExpired().observe(this, expired -> {
+            if (expired) {
+                viewModel.logout();
                 navigateToLogin();
             }
         });
     }
 
-    private void loadMails() {
-        loadMailsForFolder(currentFolder);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mailAdapter != null) mailAdapter.setMeasureBindAllocations(false);
     }
 
-    private void loadMailsForFolder(MailFolder folder) {
-        showLoading(true);
-
-        Call<ApiService.PaginatedMailResponse> call;
-        switch (folder) {
-            case INBOX:
-                call = apiService.getInbox(authManager.getBearerToken());
-                break;
-            case SENT:
-                call = apiService.getSent(authManager.getBearerToken());
-                break;
-            case DRAFTS:
-                call = apiService.getDrafts(authManager.getBearerToken());
-                break;
-            case SPAM:
-                call = apiService.getSpam(authManager.getBearerToken());
-                break;
-            case TRASH:
-                call = apiService.getTrash(authManager.getBearerToken());
-                break;
-            case STARRED:
-                call = apiService.getStarred(authManager.getBearerToken());
-                break;
-            case ALL_MAIL:
-            default:
-                call = apiService.getAllMails(authManager.getBearerToken());
-                break;
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (viewModel != null) {
+            viewModel.trimMemory(level);
         }
-
-        call.enqueue(new Callback<ApiService.PaginatedMailResponse>() {
-            @Override
-            public void onResponse(Call<ApiService.PaginatedMailResponse> call, Response<ApiService.PaginatedMailResponse> response) {
-                showLoading(false);
-                if (response.isSuccessful() && response.body() != null && response.body().getMails() != null) {
-                    allMails.clear();
-
-                    // Process each mail to convert IDs and handle server fields
-                    for (Mail mail : response.body().getMails()) {
-                        mail.convertIdFromString(); // Convert MongoDB ObjectId to integer
-                        allMails.add(mail);
-                    }
-
-                    // Clear search when switching folders
-                    binding.etSearch.setText("");
-
-                    filteredMails.clear();
-                    filteredMails.addAll(allMails);
-                    mailAdapter.notifyDataSetChanged();
-                    updateEmptyState();
-                } else {
-                    showError("Failed to load " + folder.getDisplayName().toLowerCase() + " mails");
-                }
-            }
-
-            @Override
-            public void onFailure(Call<ApiService.PaginatedMailResponse> call, Throwable t) {
-                showLoading(false);
-                showError("Network error: " + t.getMessage());
-                // Load demo data for testing
-                loadDemoMails();
-            }
-        });
-    }
-
-    private void loadDemoMails() {
-        // Demo data for testing UI
-        allMails.clear();
-        Mail mail1 = new Mail();
-        mail1.setId(1);
-        mail1.setFrom("john@doar.com");
-        mail1.setFromName("John Doe");
-        mail1.setSubject("Meeting Tomorrow");
-        mail1.setBodyPreview("Don't forget about our meeting tomorrow at 10 AM...");
-        mail1.setTime("10:30");
-        mail1.setStarred(false);
-        mail1.setRead(false); // Unread mail
-        allMails.add(mail1);
-
-        Mail mail2 = new Mail();
-        mail2.setId(2);
-        mail2.setFrom("jane@doar.com");
-        mail2.setFromName("Jane Smith");
-        mail2.setSubject("Project Update");
-        mail2.setBodyPreview("The project is progressing well. Here's the latest update...");
-        mail2.setTime("09:15");
-        mail2.setStarred(true);
-        mail2.setRead(true); // Read mail
-        allMails.add(mail2);
-
-        Mail mail3 = new Mail();
-        mail3.setId(3);
-        mail3.setFrom("admin@doar.com");
-        mail3.setFromName("Admin");
-        mail3.setSubject("New Feature Available!");
-        mail3.setBodyPreview("We're excited to announce a new feature in our app...");
-        mail3.setTime("14:22");
-        mail3.setStarred(false);
-        mail3.setRead(false); // Unread mail
-        allMails.add(mail3);
-
-        Mail mail4 = new Mail();
-        mail4.setId(4);
-        mail4.setFrom("support@doar.com");
-        mail4.setFromName("Support Team");
-        mail4.setSubject("Account Verification");
-        mail4.setBodyPreview("Please verify your account by clicking the link below...");
-        mail4.setTime("16:45");
-        mail4.setStarred(false);
-        mail4.setRead(true); // Read mail
-        allMails.add(mail4);
-
-        Mail mail5 = new Mail();
-        mail5.setId(5);
-        mail5.setTo("friend@doar.com");
-        mail5.setToName("Friend");
-        mail5.setSubject("Draft Message");
-        mail5.setBodyPreview("This is a draft message that I'm working on...");
-        mail5.setTime("18:30");
-        mail5.setStarred(false);
-        mail5.setRead(false); // Draft should not show as unread
-        mail5.setStatus("draft"); // Mark as draft
-        allMails.add(mail5);
-
-        filteredMails.clear();
-        filteredMails.addAll(allMails);
-        mailAdapter.notifyDataSetChanged();
-        updateEmptyState();
     }
 
-
     private void showProfileMenu() {
+        User currentUser = viewModel.getCurrentUser().getValue();
         Dialog dialog = new Dialog(this);
         dialog.setContentView(R.layout.dialog_profile_menu);
 
@@ -844,6 +623,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void showProfileDetails() {
+        User currentUser = viewModel.getCurrentUser().getValue();
         Dialog dialog = new Dialog(this);
         dialog.setContentView(R.layout.dialog_profile_details);
 
@@ -954,19 +734,18 @@ public class MainActivity extends AppCompatActivity {
             startActivityForResult(intent, COMPOSE_REQUEST_CODE);
         } else {
             // Mark email as read if it's unread (only for non-draft emails)
-            if (!mail.isRead()) {
+            boolean wasUnread = !mail.isRead();
+            if (wasUnread) {
                 mail.setRead(true);
-                mailAdapter.notifyDataSetChanged(); // Update UI immediately
+                mailAdapter.refreshMail(mail); // Update UI immediately
+                mailRepository.markRead(mail.getId());
             }
 
-            // Open mail detail dialog for non-draft emails
+            // Open mail detail dialog for non-draft emails; it shows this row right away
             if (mail.get_id() != null) {
-                MailDetailDialog dialog = MailDetailDialog.newInstance(mail.get_id(), currentFolder);
-                dialog.setOnMailUpdatedListener(() -> {
-                    // Refresh the mail list when mail is updated
-                    // For starred folder, we could reload or handle removal more efficiently
-                    loadMails();
-                });
+                // The dialog writes what the server confirmed to Room, the folder observer
+                // updates the list from there
+                MailDetailDialog dialog = MailDetailDialog.newInstance(mail, viewModel.getCurrentFolder(), wasUnread);
                 dialog.show(getSupportFragmentManager(), "MailDetailDialog");
             } else {
                 showError("Cannot open mail: ID not available");
@@ -980,53 +759,17 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Store original state for rollback if API fails
-        boolean originalStarredState = mail.isStarred();
-
-        // Optimistically update UI
-        mail.setStarred(!originalStarredState);
-        mailAdapter.notifyDataSetChanged();
-
-        // Call API to toggle star
-        apiService.toggleStar(authManager.getBearerToken(), mail.get_id())
-                .enqueue(new Callback<ApiService.ToggleStarResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ToggleStarResponse> call,
-                                           Response<ApiService.ToggleStarResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            // Update with server response to ensure consistency
-                            mail.setStarred(response.body().isStarred());
-                            mailAdapter.notifyDataSetChanged();
-
-                            // If we're in starred folder and mail was unstarred, remove it from view
-                            if (currentFolder == MailFolder.STARRED && !response.body().isStarred()) {
-                                filteredMails.remove(mail);
-                                allMails.remove(mail);
-                                mailAdapter.notifyDataSetChanged();
-                                updateEmptyState();
-                            }
-                        } else {
-                            // Revert optimistic update on failure
-                            mail.setStarred(originalStarredState);
-                            mailAdapter.notifyDataSetChanged();
-                            showError("Failed to toggle star");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ApiService.ToggleStarResponse> call, Throwable t) {
-                        // Revert optimistic update on failure
-                        mail.setStarred(originalStarredState);
-                        mailAdapter.notifyDataSetChanged();
-                        showError("Network error: " + t.getMessage());
-                    }
-                });
+        // Show the new state at once; the outbox writes it to Room and sends it when it can,
+        // and the starred folder drops the mail once Room is updated
+        mail.setStarred(!mail.isStarred());
+        mailAdapter.refreshMail(mail);
+        outbox.submit(mail.isStarred() ? Outbox.OP_STAR : Outbox.OP_UNSTAR, mail);
     }
 
 
     private void onMailLongClick(Mail mail) {
         enterSelectionMode();
-        mailAdapter.toggleSelection(mail.getId());
+        mailAdapter.toggleSelection(mail);
         // updateSelectedCount() is called via the OnSelectionChangedListener
     }
 
@@ -1064,14 +807,15 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void deleteSelectedMails() {
-        Set<Integer> selectedIds = mailAdapter.getSelectedMails();
+        Set<Long> selectedIds = mailAdapter.getSelectedMails();
         if (selectedIds.isEmpty()) {
             showError("No emails selected");
             return;
         }
 
-        String title = currentFolder == MailFolder.TRASH ? "Permanently delete" : "Delete Emails";
-        String message = currentFolder == MailFolder.TRASH ?
+        boolean inTrash = viewModel.getCurrentFolder() == MailFolder.TRASH;
+        String title = inTrash ? "Permanently delete" : "Delete Emails";
+        String message = inTrash ?
                 "Are you sure you want to permanently delete " + selectedIds.size() + " email(s)?" :
                 "Are you sure you want to move " + selectedIds.size() + " email(s) to trash?";
 
@@ -1080,10 +824,10 @@ public class MainActivity extends AppCompatActivity {
                 .setTitle(title)
                 .setMessage(message)
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    if (currentFolder == MailFolder.TRASH) {
-                        permanentlyDeleteSelectedMails(selectedIds);
+                    if (inTrash) {
+                        permanentlyDeleteSelectedMails();
                     } else {
-                        moveSelectedMailsToTrash(selectedIds);
+                        moveSelectedMailsToTrash();
                     }
                 })
                 .setNegativeButton("Cancel", null)
@@ -1091,32 +835,30 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void showLabelDialog() {
-        Set<Integer> selectedIds = mailAdapter.getSelectedMails();
+        Set<Long> selectedIds = mailAdapter.getSelectedMails();
         if (selectedIds.isEmpty()) {
             showError("No emails selected");
             return;
         }
 
-        // Get the first selected mail for display purposes
-        Mail firstMail = null;
-        for (Mail mail : filteredMails) {
-            if (selectedIds.contains(mail.getId())) {
-                firstMail = mail;
-                break;
-            }
-        }
-
-        String mailSubject = firstMail != null ? firstMail.getDisplaySubject() : "Selected emails";
+        List<Mail> selected = selectedMails();
+        // The first selected mail names the dialog
+        String mailSubject = !selected.isEmpty() ? selected.get(0).getDisplaySubject() : "Selected emails";
         boolean isSingleMail = selectedIds.size() == 1;
 
+        Set<String> selectedServerIds = new HashSet<>();
+        for (Mail mail : selected) {
+            selectedServerIds.add(mail.get_id());
+        }
+
         LabelEmailDialog dialog = LabelEmailDialog.newInstance(
-                selectedIds.stream().map(String::valueOf).collect(Collectors.toSet()),
+                selectedServerIds,
                 isSingleMail,
                 mailSubject
         );
-        dialog.setOnLabelsAppliedListener(() -> {
+        dialog.setOnLabelsAppliedListener((labelIds, mailIds) -> {
+            applyLabels(labelIds, mailIds);
             exitSelectionMode();
-            loadMails(); // Refresh the mail list after labeling
         });
         dialog.show(getSupportFragmentManager(), "LabelEmailDialog");
     }
@@ -1127,107 +869,46 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateEmptyState() {
-        boolean isEmpty = filteredMails.isEmpty();
+        List<Mail> shown = viewModel.getShownMails().getValue();
+        if (shown == null) return; // Nothing delivered yet, the folder is still opening
+        boolean isEmpty = shown.isEmpty();
+        if (isEmpty && viewModel.isRefreshing()) {
+            // Nothing cached yet - keep the spinner until the server answers
+            return;
+        }
+        progressLoading.setVisibility(View.GONE);
         emptyStateLayout.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
         recyclerView.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
     }
 
 
-    private void moveSelectedMailsToTrash(Set<Integer> selectedIds) {
-        // Count successful operations
-        final int[] completedCount = {0};
-        final int totalCount = selectedIds.size();
-
-        for (Integer mailId : selectedIds) {
-            // Find the mail by ID
-            Mail mail = findMailById(mailId);
-            if (mail == null || mail.get_id() == null) continue;
-
-            apiService.moveToTrash(authManager.getBearerToken(), mail.get_id())
-                    .enqueue(new Callback<ApiService.ApiResponse>() {
-                        @Override
-                        public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                            completedCount[0]++;
-                            if (response.isSuccessful()) {
-                                // Remove from local lists
-                                filteredMails.removeIf(m -> m.getId() == mailId);
-                                allMails.removeIf(m -> m.getId() == mailId);
-                            }
-
-                            // Check if all operations completed
-                            if (completedCount[0] == totalCount) {
-                                mailAdapter.notifyDataSetChanged();
-                                exitSelectionMode();
-                                updateEmptyState();
-                                showError(completedCount[0] + " mail(s) moved to trash");
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                            completedCount[0]++;
-                            if (completedCount[0] == totalCount) {
-                                mailAdapter.notifyDataSetChanged();
-                                exitSelectionMode();
-                                updateEmptyState();
-                                showError("Some operations failed");
-                            }
-                        }
-                    });
-        }
+    private void moveSelectedMailsToTrash() {
+        submitSelected(Outbox.OP_TRASH, " mail(s) moved to trash");
     }
 
-    private void permanentlyDeleteSelectedMails(Set<Integer> selectedIds) {
-        // Count successful operations
-        final int[] completedCount = {0};
-        final int totalCount = selectedIds.size();
-
-        for (Integer mailId : selectedIds) {
-            // Find the mail by ID
-            Mail mail = findMailById(mailId);
-            if (mail == null || mail.get_id() == null) continue;
-
-            apiService.permanentlyDelete(authManager.getBearerToken(), mail.get_id())
-                    .enqueue(new Callback<ApiService.ApiResponse>() {
-                        @Override
-                        public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                            completedCount[0]++;
-                            if (response.isSuccessful()) {
-                                // Remove from local lists
-                                filteredMails.removeIf(m -> m.getId() == mailId);
-                                allMails.removeIf(m -> m.getId() == mailId);
-                            }
-
-                            // Check if all operations completed
-                            if (completedCount[0] == totalCount) {
-                                mailAdapter.notifyDataSetChanged();
-                                exitSelectionMode();
-                                updateEmptyState();
-                                showError(completedCount[0] + " mail(s) permanently deleted");
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                            completedCount[0]++;
-                            if (completedCount[0] == totalCount) {
-                                mailAdapter.notifyDataSetChanged();
-                                exitSelectionMode();
-                                updateEmptyState();
-                                showError("Some operations failed");
-                            }
-                        }
-                    });
-        }
+    private void permanentlyDeleteSelectedMails() {
+        submitSelected(Outbox.OP_DELETE, " mail(s) permanently deleted");
+    }
+
+    // Apply the operation to the whole selection locally and queue it as one batch;
+    // the observer updates the list
+    private void submitSelected(String op, String message) {
+        List<Mail> selected = selectedMails();
+        exitSelectionMode();
+        if (selected.isEmpty()) return;
+        outbox.submit(op, selected, null);
+        showError(selected.size() + message);
     }
 
-    private Mail findMailById(int id) {
-        for (Mail mail : allMails) {
-            if (mail.getId() == id) {
-                return mail;
+    // Selected mails that exist on the server, also when selected in search results or a label
+    private List<Mail> selectedMails() {
+        List<Mail> selected = new ArrayList<>();
+        for (Mail mail : mailAdapter.getSelection()) {
+            if (mail.get_id() != null) {
+                selected.add(mail);
             }
         }
-        return null;
+        return selected;
     }
 
     private void setupEmptyTrashButton() {
@@ -1239,29 +920,7 @@ public class MainActivity extends AppCompatActivity {
         new androidx.appcompat.app.AlertDialog.Builder(this)
                 .setTitle("Empty Trash")
                 .setMessage("Are you sure you want to permanently delete all emails in trash? This action cannot be undone.")
-                .setPositiveButton("Empty Trash", (dialog, which) -> {
-                    apiService.emptyTrash(authManager.getBearerToken())
-                            .enqueue(new Callback<ApiService.ApiResponse>() {
-                                @Override
-                                public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                                    if (response.isSuccessful()) {
-                                        // Clear all mails from current view
-                                        allMails.clear();
-                                        filteredMails.clear();
-                                        mailAdapter.notifyDataSetChanged();
-                                        updateEmptyState();
-                                        showError("Trash emptied successfully");
-                                    } else {
-                                        showError("Failed to empty trash");
-                                    }
-                                }
-
-                                @Override
-                                public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                                    showError("Network error: " + t.getMessage());
-                                }
-                            });
-                })
+                .setPositiveButton("Empty Trash", (dialog, which) -> viewModel.emptyTrash())
                 .setNegativeButton("Cancel", null)
                 .show();
     }
@@ -1281,22 +940,17 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-
-        if (requestCode == COMPOSE_REQUEST_CODE && resultCode == RESULT_OK) {
-            // Email was sent successfully, refresh the current folder
-            loadMails();
-        }
-    }
-
     private void onLabelMailClick(Mail mail) {
         LabelEmailDialog dialog = LabelEmailDialog.newInstance(mail);
-        dialog.setOnLabelsAppliedListener(() -> {
+        dialog.setOnLabelsAppliedListener((labelIds, mailIds) -> {
+            applyLabels(labelIds, mailIds);
             showError("Mail labeled successfully");
-            loadMails(); // Refresh mails after labeling
         });
         dialog.show(getSupportFragmentManager(), "LabelEmailDialog");
     }
+
+    // The label view reads the index the view model updates
+    private void applyLabels(List<String> labelIds, Set<String> serverMailIds) {
+        viewModel.onLabelsApplied(labelIds, serverMailIds);
+    }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package com.example.myapplication;
 import android.app.Application;
 import androidx.appcompat.app.AppCompatDelegate;
 
+import com.example.myapplication.api.ApiClient;
+
 public class MyApplication extends Application {
     
     @Override
@@ -11,5 +13,8 @@ public class MyApplication extends Application {
         
         // Enable automatic dark mode switching based on system settings
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_FOLLOW_SYSTEM);
+
+        // Before the first request, so the API client gets its disk cache
+        ApiClient.init(this);
     }
 } 
\ No newline at end of file
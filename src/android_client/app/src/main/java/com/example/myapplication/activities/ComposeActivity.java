@@ -15,6 +15,7 @@ import com.example.myapplication.R;
 import com.example.myapplication.api.ApiClient;
 import com.example.myapplication.api.ApiService;
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.repository.MailRepository;
 import com.example.myapplication.utils.AuthManager;
 
 import android.content.Intent;
@@ -144,7 +145,7 @@ public class ComposeActivity extends AppCompatActivity {
         
         if (isEditingDraft && existingDraft != null) {
             // Update existing draft
-            composeViewModel.updateDraft(authManager.getBearerToken(), existingDraft.get_id(), to, subject, body);
+            composeViewModel.updateDraft(authManager.getBearerToken(), existingDraft, to, subject, body);
         } else {
             // Create new draft
             composeViewModel.createDraft(authManager.getBearerToken(), to, subject, body);
@@ -173,13 +174,21 @@ public class ComposeActivity extends AppCompatActivity {
 
         if (isEditingDraft && existingDraft != null) {
             // Update existing draft to sent status
-            composeViewModel.updateDraftToSent(authManager.getBearerToken(), existingDraft.get_id(), to, subject, body);
+            composeViewModel.updateDraftToSent(authManager.getBearerToken(), existingDraft, to, subject, body);
         } else {
             // Create and send new mail
             composeViewModel.sendMail(authManager.getBearerToken(), to, subject, body);
         }
     }
     
+    // Put the saved mail into the local store, so the mail list shows it without a reload
+    private void applySavedMail() {
+        Mail saved = composeViewModel.getSavedMail().getValue();
+        if (saved != null) {
+            MailRepository.getInstance(this).applySaved(saved);
+        }
+    }
+
     private void observeViewModel() {
         composeViewModel.getLoading().observe(this, isLoading -> setLoadingState(isLoading != null && isLoading));
         composeViewModel.getErrorMessage().observe(this, error -> {
@@ -192,12 +201,14 @@ public class ComposeActivity extends AppCompatActivity {
         });
         composeViewModel.getSendSuccess().observe(this, success -> {
             if (success != null && success) {
+                applySavedMail();
                 setResult(RESULT_OK);
                 finish();
             }
         });
         composeViewModel.getDraftSuccess().observe(this, success -> {
             if (success != null && success) {
+                applySavedMail();
                 setResult(RESULT_OK);
                 finish();
             }
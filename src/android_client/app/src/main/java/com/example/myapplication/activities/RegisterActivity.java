@@ -27,6 +27,7 @@ import androidx.lifecycle.ViewModelProvider;
 import com.example.myapplication.R;
 import com.example.myapplication.api.ApiClient;
 import com.example.myapplication.api.ApiService;
+import com.example.myapplication.utils.AppExecutors;
 import com.example.myapplication.utils.PhotoHandler;
 import com.example.myapplication.viewModel.RegisterViewModel;
 
@@ -34,7 +35,6 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
 
-import android.graphics.Bitmap;
 
 public class RegisterActivity extends AppCompatActivity {
 
@@ -190,28 +190,32 @@ public class RegisterActivity extends AppCompatActivity {
                 return;
             }
 
-            String photoFilePath = null;
-            String photoMimeType = null;
-            if (selectedImageUri != null) {
-                try {
-                    // copy the content URI into a temp file in cache
-                    File tmp = new File(getCacheDir(), "upload.jpg");
-                    try (InputStream in = getContentResolver().openInputStream(selectedImageUri);
-                            FileOutputStream out = new FileOutputStream(tmp)) {
-                        byte[] buf = new byte[4096];
-                        int len;
-                        while ((len = in.read(buf)) > 0)
-                            out.write(buf, 0, len);
-                    }
-                    photoFilePath = tmp.getAbsolutePath();
-                    photoMimeType = getContentResolver().getType(selectedImageUri);
+            if (selectedImageUri == null) {
+                registerViewModel.register(firstName, lastName, username, password, birthDate, gender, null, null);
+                return;
+            }
+            Uri photoUri = selectedImageUri;
+            AppExecutors.getInstance().io().execute(() -> {
+                // copy the content URI into a temp file in cache
+                File tmp = new File(getCacheDir(), "upload.jpg");
+                String photoMimeType;
+                try (InputStream in = getContentResolver().openInputStream(photoUri);
+                        FileOutputStream out = new FileOutputStream(tmp)) {
+                    byte[] buf = new byte[4096];
+                    int len;
+                    while ((len = in.read(buf)) > 0)
+                        out.write(buf, 0, len);
+                    photoMimeType = getContentResolver().getType(photoUri);
                 } catch (IOException e) {
-                    showError("Failed to process selected photo");
+                    AppExecutors.getInstance().main().execute(() -> showError("Failed to process selected photo"));
                     return;
                 }
-            }
-            registerViewModel.register(firstName, lastName, username, password, birthDate, gender, photoFilePath,
-                    photoMimeType);
+                AppExecutors.getInstance().main().execute(() -> {
+                    if (isFinishing()) return;
+                    registerViewModel.register(firstName, lastName, username, password, birthDate, gender,
+                            tmp.getAbsolutePath(), photoMimeType);
+                });
+            });
         });
         tvBackToLogin.setOnClickListener(v -> navigateToLogin());
     }
@@ -353,18 +357,8 @@ public class RegisterActivity extends AppCompatActivity {
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        // Use PhotoHandler to handle result and update image
-        Bitmap bitmap = photoHandler.onActivityResult(requestCode, resultCode, data);
-        if (bitmap != null) {
-            // Save the URI for upload
-            if (requestCode == 102 || requestCode == 103) { // CAMERA_REQUEST or GALLERY_PERM
-                // Get the URI from the ImageView
-                Uri uri = photoHandler.uri;
-                if (uri != null) {
-                    selectedImageUri = uri;
-                }
-            }
-        }
+        // PhotoHandler shows the image once it is decoded; keep its URI for the upload
+        photoHandler.onActivityResult(requestCode, resultCode, data, uri -> selectedImageUri = uri);
     }
 
     // Password validation: min 8 chars, upper, lower, number, special
@@ -1,5 +1,10 @@
 package com.example.myapplication.api;
 
+import android.content.Context;
+
+import java.io.File;
+
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
@@ -9,17 +14,38 @@ public class ApiClient {
     // Try this IP if 192.168.1.150 doesn't work. Check your phone's WiFi settings to see which network it's connected to.
     // Alternative IPs from your computer: 192.168.75.1, 192.168.132.1, or 172.26.208.1
     private static final String BASE_URL = "http://10.0.2.2:8080/"; // Use 10.0.2.2 for Android emulator to access host backend
+    private static final long CACHE_SIZE = 10L * 1024 * 1024; // 10 MB
     private static ApiClient instance;
+    private static File cacheDir;
     private ApiService apiService;
+    private ApiService prefetchApiService;
+    private Cache cache;
+    private final CacheStatsInterceptor cacheStats = new CacheStatsInterceptor();
+    private final UserRequestTracker userRequests = new UserRequestTracker();
+
+    // Called once from MyApplication so the client can keep an HTTP cache on disk
+    public static synchronized void init(Context context) {
+        cacheDir = new File(context.getApplicationContext().getCacheDir(), "http");
+    }
 
     private ApiClient() {
         // Create logging interceptor
         HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
         loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
 
-        // Create OkHttp client
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
-                .addInterceptor(loggingInterceptor)
+        // Create OkHttp client; the server sends ETags, so cached responses
+        // are revalidated and come back as 304 without a body when unchanged
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .addInterceptor(cacheStats)
+                .addInterceptor(loggingInterceptor);
+        if (cacheDir != null) {
+            cache = new Cache(cacheDir, CACHE_SIZE);
+            builder.cache(cache);
+        }
+        OkHttpClient backgroundClient = builder.build();
+        // Same connections and cache, but its requests count as the user's
+        OkHttpClient okHttpClient = backgroundClient.newBuilder()
+                .addInterceptor(userRequests)
                 .build();
 
         // Create Retrofit instance
@@ -30,6 +56,7 @@ public class ApiClient {
                 .build();
 
         apiService = retrofit.create(ApiService.class);
+        prefetchApiService = retrofit.newBuilder().client(backgroundClient).build().create(ApiService.class);
     }
 
     public static synchronized ApiClient getInstance() {
@@ -43,6 +70,29 @@ public class ApiClient {
         return apiService;
     }
 
+    // For speculative requests; they are not seen by the UserRequestTracker
+    public ApiService getPrefetchApiService() {
+        return prefetchApiService;
+    }
+
+    public UserRequestTracker getUserRequests() {
+        return userRequests;
+    }
+
+    // Drop cached responses of the signed-out user; blocking disk IO
+    public void clearCache() {
+        if (cache == null) return;
+        try {
+            cache.evictAll();
+        } catch (java.io.IOException e) {
+            // The cache is best effort
+        }
+    }
+
+    public CacheStatsInterceptor getCacheStats() {
+        return cacheStats;
+    }
+
     public String getBaseUrl() {
         return BASE_URL;
     }
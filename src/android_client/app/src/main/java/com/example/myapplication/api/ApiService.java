@@ -51,33 +51,32 @@ public interface ApiService {
     Call<PaginatedMailResponse> getMails(@Header("Authorization") String token);
     
     @GET("api/mails/all")
-    Call<PaginatedMailResponse> getAllMails(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getAllMails(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     @GET("api/inbox")
-    Call<PaginatedMailResponse> getInbox(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getInbox(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     @GET("api/sent")
-    Call<PaginatedMailResponse> getSent(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getSent(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     @GET("api/drafts")
-    Call<PaginatedMailResponse> getDrafts(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getDrafts(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     @GET("api/starred")
-    Call<PaginatedMailResponse> getStarred(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getStarred(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
-    // Toggle star status
-    @POST("api/starred/{id}")
-    Call<ToggleStarResponse> toggleStar(@Header("Authorization") String token, @Path("id") String mailId);
+    // Set, not toggle: sending the same state twice leaves it as it is
+    @PUT("api/starred/{id}")
+    Call<Void> setStarred(@Header("Authorization") String token, @Path("id") String mailId, @Body StarredRequest request);
     
-    // Check if mail is starred
-    @GET("api/starred/{id}")
-    Call<StarredResponse> isMailStarred(@Header("Authorization") String token, @Path("id") String mailId);
+    @PUT("api/mails/{id}/read")
+    Call<Void> setRead(@Header("Authorization") String token, @Path("id") String mailId, @Body ReadRequest request);
     
     @GET("api/spam")
-    Call<PaginatedMailResponse> getSpam(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getSpam(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     @GET("api/trash")
-    Call<PaginatedMailResponse> getTrash(@Header("Authorization") String token);
+    Call<PaginatedMailResponse> getTrash(@Header("Authorization") String token, @Query("cursor") String cursor, @Query("limit") int limit);
     
     // Trash operations
     @DELETE("api/mails/{id}")
@@ -99,11 +98,19 @@ public interface ApiService {
     @POST("api/spam/{id}/unspam")
     Call<ApiResponse> unmarkAsSpam(@Header("Authorization") String token, @Path("id") String mailId);
     
-    // Get individual mail details
+    // Apply one operation (trash, delete, restore, spam, unspam, star, unstar, read, label) to many mails
+    @POST("api/mails/batch")
+    Call<BatchResponse> batchMutate(@Header("Authorization") String token, @Body BatchRequest request);
+    
+    // Delta sync: mails changed since the token, plus tombstones for removed ones
+    @GET("api/sync")
+    Call<SyncResponse> sync(@Header("Authorization") String token, @Query("since") String since);
+    
+    // Get individual mail details; peek=true leaves an unread mail unread
     @GET("api/mails/{id}")
-    Call<Mail> getMailById(@Header("Authorization") String token, @Path("id") String mailId);
+    Call<Mail> getMailById(@Header("Authorization") String token, @Path("id") String mailId, @Query("peek") Boolean peek);
     
-    // Search
+    // Search; with a limit or cursor the server answers one page and a nextCursor
     @GET("api/search")
     Call<SearchResponse> searchMails(
         @Header("Authorization") String token,
@@ -111,7 +118,9 @@ public interface ApiService {
         @Query("subject") String subject,
         @Query("from") String from,
         @Query("to") String to,
-        @Query("content") String content
+        @Query("content") String content,
+        @Query("cursor") String cursor,
+        @Query("limit") Integer limit
     );
     
     // Label operations
@@ -127,6 +136,10 @@ public interface ApiService {
     @DELETE("api/labels/{id}")
     Call<ApiResponse> deleteLabel(@Header("Authorization") String token, @Path("id") String id);
     
+    // One page of a label's mails across all folders, newest first; pass the previous nextCursor for the next page
+    @GET("api/labels/{id}/mails")
+    Call<PaginatedMailResponse> getLabelMails(@Header("Authorization") String token, @Path("id") String id, @Query("cursor") String cursor, @Query("limit") int limit);
+    
     @PUT("api/labels/{id}/color")
     Call<Label> updateLabelColor(@Header("Authorization") String token, @Path("id") String id, @Body ColorRequest request);
     
@@ -219,9 +232,34 @@ public interface ApiService {
     class SearchResponse {
         private List<Mail> results;
         private int count;
+        private String nextCursor; // Only for paged requests, null on the last page
         
         public List<Mail> getResults() { return results; }
         public int getCount() { return count; }
+        public String getNextCursor() { return nextCursor; }
+    }
+    
+    class SyncResponse {
+        private String token;
+        private boolean reset;
+        private List<Mail> mails;
+        private List<Tombstone> tombstones;
+        
+        public String getToken() { return token; }
+        public boolean isReset() { return reset; }
+        public List<Mail> getMails() { return mails; }
+        public List<Tombstone> getTombstones() { return tombstones; }
+    }
+    
+    // A mail that left a folder since the last sync
+    class Tombstone {
+        private String _id;
+        private String folder;
+        private long deletedAt;
+        
+        public String get_id() { return _id; }
+        public String getFolder() { return folder; }
+        public long getDeletedAt() { return deletedAt; }
     }
     
     // Label request/response models
@@ -267,6 +305,26 @@ public interface ApiService {
         public String getColor() { return color; }
     }
     
+    class StarredRequest {
+        private boolean starred;
+        
+        public StarredRequest(boolean starred) {
+            this.starred = starred;
+        }
+        
+        public boolean isStarred() { return starred; }
+    }
+    
+    class ReadRequest {
+        private boolean read;
+        
+        public ReadRequest(boolean read) {
+            this.read = read;
+        }
+        
+        public boolean isRead() { return read; }
+    }
+    
     class ApiResponse {
         private String status;
         private String message;
@@ -275,6 +333,49 @@ public interface ApiService {
         public String getMessage() { return message; }
     }
     
+    class BatchRequest {
+        private List<String> ids;
+        private String op;
+        private String labelId;
+        
+        public BatchRequest(List<String> ids, String op) {
+            this.ids = ids;
+            this.op = op;
+        }
+        
+        public BatchRequest(List<String> ids, String op, String labelId) {
+            this(ids, op);
+            this.labelId = labelId;
+        }
+        
+        public List<String> getIds() { return ids; }
+        public String getOp() { return op; }
+        public String getLabelId() { return labelId; }
+    }
+    
+    class BatchResponse {
+        private String op;
+        private int succeeded;
+        private int failed;
+        private List<BatchResult> results;
+        
+        public String getOp() { return op; }
+        public int getSucceeded() { return succeeded; }
+        public int getFailed() { return failed; }
+        public List<BatchResult> getResults() { return results; }
+    }
+    
+    // Outcome for one mail of a batch
+    class BatchResult {
+        private String id;
+        private boolean ok;
+        private String error;
+        
+        public String getId() { return id; }
+        public boolean isOk() { return ok; }
+        public String getError() { return error; }
+    }
+    
     // Mail creation request
     class CreateMailRequest {
         private String to;
@@ -320,39 +421,19 @@ public interface ApiService {
         private int page;
         private int limit;
         private int total;
+        private String nextCursor; // null on the last page
         private List<Mail> mails;
         
         public int getPage() { return page; }
         public int getLimit() { return limit; }
         public int getTotal() { return total; }
+        public String getNextCursor() { return nextCursor; }
         public List<Mail> getMails() { return mails; }
         
         public void setPage(int page) { this.page = page; }
         public void setLimit(int limit) { this.limit = limit; }
         public void setTotal(int total) { this.total = total; }
+        public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
         public void setMails(List<Mail> mails) { this.mails = mails; }
     }
-    
-    // Response for star toggle operation
-    class ToggleStarResponse {
-        private String message;
-        private boolean starred;
-        private String mailId;
-        
-        public String getMessage() { return message; }
-        public boolean isStarred() { return starred; }
-        public String getMailId() { return mailId; }
-        
-        public void setMessage(String message) { this.message = message; }
-        public void setStarred(boolean starred) { this.starred = starred; }
-        public void setMailId(String mailId) { this.mailId = mailId; }
-    }
-    
-    // Response for checking starred status
-    class StarredResponse {
-        private boolean starred;
-        
-        public boolean isStarred() { return starred; }
-        public void setStarred(boolean starred) { this.starred = starred; }
-    }
 } 
\ No newline at end of file
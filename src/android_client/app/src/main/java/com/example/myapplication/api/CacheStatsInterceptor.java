@@ -0,0 +1,50 @@
+package com.example.myapplication.api;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Counts how each response was served: straight from the disk cache,
+ * revalidated by the server with a 304, or downloaded in full. The totals are
+ * logged every {@value #REPORT_EVERY} responses rather than on each one.
+ */
+public class CacheStatsInterceptor implements Interceptor {
+    private static final String TAG = "HttpCache";
+    private static final int REPORT_EVERY = 100; // responses
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger conditionalHits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger responses = new AtomicInteger();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (response.cacheResponse() != null && response.networkResponse() == null) {
+            hits.incrementAndGet();
+        } else if (response.cacheResponse() != null) {
+            // networkResponse is the 304 that validated the cached body
+            conditionalHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        if (responses.incrementAndGet() % REPORT_EVERY == 0) {
+            Log.d(TAG, toString());
+        }
+        return response;
+    }
+
+    public int getHits() { return hits.get(); }
+    public int getConditionalHits() { return conditionalHits.get(); }
+    public int getMisses() { return misses.get(); }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits.get() + " conditional=" + conditionalHits.get() + " misses=" + misses.get();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.myapplication.api;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.example.myapplication.utils.AppExecutors;
+
+/**
+ * Turns response bodies into what the screens show off the main thread. Retrofit
+ * calls back on the main thread, so id conversion, copies and sorting are handed to
+ * a background stage here, and only the swap of the finished snapshot is posted back.
+ * Responses are prepared one at a time, in the order they were handed in.
+ * Swaps that cost a frame are logged as warnings; every swap is logged at debug
+ * level when enabled with "adb shell setprop log.tag.ResponseMainTime DEBUG".
+ */
+public class ResponseProcessor {
+    private static final String TAG = "ResponseMainTime";
+    // A swap longer than this costs a frame
+    private static final long FRAME_BUDGET_NANOS = 16_000_000;
+
+    public interface Stage<T, R> {
+        // Runs on the background thread; the result must not be changed afterwards
+        R prepare(T body);
+    }
+
+    public interface Swap<R> {
+        // Runs on the main thread; check here whether the response is still wanted
+        void apply(R snapshot);
+    }
+
+    public interface Failure {
+        // Runs on the main thread instead of the swap when the stage threw
+        void onFailure(RuntimeException error);
+    }
+
+    private static ResponseProcessor instance;
+
+    private final Executor executor = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().compute());
+    private final Executor mainThread = AppExecutors.getInstance().main();
+    private final Map<String, Stats> stats = new HashMap<>(); // Main thread only
+
+    private static final class Stats {
+        long responses;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    private ResponseProcessor() {
+    }
+
+    public static synchronized ResponseProcessor getInstance() {
+        if (instance == null) {
+            instance = new ResponseProcessor();
+        }
+        return instance;
+    }
+
+    // name groups the responses in the log, e.g. "labels" or "search"
+    public <T, R> void process(String name, T body, Stage<T, R> stage, Swap<R> swap) {
+        process(name, body, stage, swap, null);
+    }
+
+    // As above; failure, when given, lets the caller clear what it kept in flight
+    public <T, R> void process(String name, T body, Stage<T, R> stage, Swap<R> swap, Failure failure) {
+        executor.execute(() -> {
+            R snapshot;
+            try {
+                snapshot = stage.prepare(body);
+            } catch (RuntimeException e) {
+                // A malformed body; the responses queued behind it are still prepared
+                Log.e(TAG, name + ": preparing the response failed", e);
+                if (failure != null) mainThread.execute(() -> failure.onFailure(e));
+                return;
+            }
+            mainThread.execute(() -> {
+                long start = SystemClock.elapsedRealtimeNanos();
+                swap.apply(snapshot);
+                record(name, SystemClock.elapsedRealtimeNanos() - start);
+            });
+        });
+    }
+
+    private void record(String name, long nanos) {
+        Stats entry = stats.get(name);
+        if (entry == null) {
+            entry = new Stats();
+            stats.put(name, entry);
+        }
+        entry.responses++;
+        entry.totalNanos += nanos;
+        entry.maxNanos = Math.max(entry.maxNanos, nanos);
+
+        boolean slow = nanos > FRAME_BUDGET_NANOS;
+        if (!slow && !Log.isLoggable(TAG, Log.DEBUG)) return;
+        String line = name + ": " + nanos / 1000 + " us on the main thread (avg "
+                + entry.totalNanos / entry.responses / 1000 + " us, max "
+                + entry.maxNanos / 1000 + " us over " + entry.responses + " responses)";
+        if (slow) {
+            Log.w(TAG, line);
+        } else {
+            Log.d(TAG, line);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.myapplication.api;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Sees every request made on the user's behalf, i.e. through
+ * {@link ApiClient#getApiService()} but not the prefetch service, so background
+ * work can get out of the way as soon as the user needs the network.
+ */
+public class UserRequestTracker implements Interceptor {
+    public interface Listener {
+        // Called on the OkHttp thread, before the request goes out
+        void onUserRequest();
+    }
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        inFlight.incrementAndGet();
+        try {
+            for (Listener listener : listeners) {
+                listener.onUserRequest();
+            }
+            return chain.proceed(chain.request());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // True while a user request is waiting for its response
+    public boolean isBusy() {
+        return inFlight.get() > 0;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
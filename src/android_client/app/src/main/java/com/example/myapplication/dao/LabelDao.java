@@ -0,0 +1,36 @@
+package com.example.myapplication.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Upsert;
+
+import java.util.List;
+
+import com.example.myapplication.models.Label;
+
+@Dao
+public interface LabelDao {
+    // Same order as the server's label list
+    @Query("SELECT * FROM label ORDER BY name")
+    List<Label> getAll();
+
+    @Upsert
+    void upsert(Label label);
+
+    @Upsert
+    void upsertAll(List<Label> labels);
+
+    @Query("DELETE FROM label WHERE id IN (:ids)")
+    void delete(List<String> ids);
+
+    @Query("DELETE FROM label")
+    void clearAll();
+
+    // Swap in a fresh list from the server
+    @Transaction
+    default void replaceAll(List<Label> labels) {
+        clearAll();
+        upsertAll(labels);
+    }
+}
@@ -4,10 +4,12 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Upsert;
 
 import java.util.List;
 
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.MailMatch;
 
 @Dao
 public interface MailDao {
@@ -15,7 +17,92 @@ public interface MailDao {
     @Query("SELECT * FROM mail")
     LiveData<List<Mail>> getAllMails();
 
+    // Rows keep the folders a mail is in as ",inbox,sent,", one row per mail.
+    // A row whose last folder is removed is deleted with deleteFolderless.
+
+    // A window of a single server folder, newest first
+    @Query("SELECT * FROM mail WHERE folders LIKE '%,' || :folder || ',%' ORDER BY timestamp DESC LIMIT :limit OFFSET :offset")
+    LiveData<List<Mail>> getMailsInFolder(String folder, int limit, int offset);
+
+    // A window of inbox, sent and drafts (used by "All Doar"), newest first
+    @Query("SELECT * FROM mail WHERE folders LIKE '%,inbox,%' OR folders LIKE '%,sent,%' OR folders LIKE '%,draft,%' " +
+            "ORDER BY timestamp DESC LIMIT :limit OFFSET :offset")
+    LiveData<List<Mail>> getAllMailMails(int limit, int offset);
+
+    // A window of starred mails outside of trash, newest first
+    @Query("SELECT * FROM mail WHERE starred = 1 AND folders != ',trash,' ORDER BY timestamp DESC LIMIT :limit OFFSET :offset")
+    LiveData<List<Mail>> getStarredMails(int limit, int offset);
+
+    // Every cached row, for building in-memory indexes; call off the main thread
+    @Query("SELECT * FROM mail")
+    List<Mail> getAllMailsNow();
+
+    // Resolve index hits to rows; ids that are no longer cached are simply missing
+    @Query("SELECT * FROM mail WHERE id IN (:ids) ORDER BY timestamp DESC")
+    List<Mail> getMailsByIds(List<Long> ids);
+
     // Insert a new mail
     @Insert
     void insertMail(Mail mail);
+
+    // Insert or update mails coming from the server. An update rather than REPLACE,
+    // so the mail_fts triggers see the old row go away before the new one is indexed
+    @Upsert
+    void upsertMails(List<Mail> mails);
+
+    // Full-text search across every folder; newest candidates first, ranked by the caller
+    @Query("SELECT mail.*, matchinfo(mail_fts, 'pcx') AS matchinfo FROM mail " +
+            "JOIN mail_fts ON mail.rowid = mail_fts.rowid " +
+            "WHERE mail_fts MATCH :match ORDER BY mail.timestamp DESC LIMIT :limit")
+    List<MailMatch> searchMails(String match, int limit);
+
+    // Take a folder off rows the server no longer returns in it inside the refreshed window.
+    // Rows with a change still in the outbox are left alone, the server does not have it yet.
+    @Query("UPDATE mail SET folders = REPLACE(folders, ',' || :folder || ',', ',') " +
+            "WHERE folders LIKE '%,' || :folder || ',%' AND timestamp BETWEEN :since AND :until AND id NOT IN (:keepIds) " +
+            "AND id NOT IN (SELECT localId FROM outbox WHERE state != 'failed')")
+    void removeStaleFromFolder(String folder, long since, long until, List<Long> keepIds);
+
+    // The rows deleteFolderless is about to delete, so in-memory indexes can drop them
+    @Query("SELECT id FROM mail WHERE folders = ',' OR folders IS NULL")
+    List<Long> getFolderlessIds();
+
+    @Query("DELETE FROM mail WHERE folders = ',' OR folders IS NULL")
+    void deleteFolderless();
+
+    // Clear the star of rows the server no longer reports as starred inside the refreshed window,
+    // apart from rows with a change still in the outbox
+    @Query("UPDATE mail SET starred = 0 WHERE starred = 1 AND timestamp BETWEEN :since AND :until AND id NOT IN (:keepIds) " +
+            "AND id NOT IN (SELECT localId FROM outbox WHERE state != 'failed')")
+    void unstarStale(long since, long until, List<Long> keepIds);
+
+    @Query("UPDATE mail SET starred = :starred WHERE id = :id")
+    void setStarred(long id, boolean starred);
+
+    @Query("UPDATE mail SET read = 1 WHERE id = :id")
+    void markRead(long id);
+
+    // Moves the whole mail; a view the server kept elsewhere comes back with the next sync.
+    // The folders it leaves are kept for moveBack, unless it leaves trash or spam.
+    @Query("UPDATE mail SET movedFrom = CASE WHEN folders IN (',trash,', ',spam,') THEN movedFrom ELSE folders END, "
+            + "folders = ',' || :folder || ',' WHERE id IN (:ids)")
+    void moveToFolder(List<Long> ids, String folder);
+
+    // Restore or unspam locally: back to where moveToFolder took the mail from, else inbox
+    @Query("UPDATE mail SET folders = COALESCE(movedFrom, ',inbox,'), movedFrom = NULL "
+            + "WHERE id IN (:ids) AND folders IN (',trash,', ',spam,')")
+    void moveBack(List<Long> ids);
+
+    @Query("DELETE FROM mail WHERE id IN (:ids)")
+    void deleteMails(List<Long> ids);
+
+    // Apply a sync tombstone; the row may already have moved to another folder
+    @Query("UPDATE mail SET folders = REPLACE(folders, ',' || :folder || ',', ',') WHERE id = :id")
+    void removeFromFolder(long id, String folder);
+
+    @Query("UPDATE mail SET folders = REPLACE(folders, ',' || :folder || ',', ',') WHERE folders LIKE '%,' || :folder || ',%'")
+    void removeAllFromFolder(String folder);
+
+    @Query("DELETE FROM mail")
+    void clearAll();
 }
@@ -0,0 +1,53 @@
+package com.example.myapplication.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import java.util.List;
+
+import com.example.myapplication.models.OutboxEntry;
+
+@Dao
+public interface OutboxDao {
+    @Query("SELECT * FROM outbox ORDER BY seq")
+    LiveData<List<OutboxEntry>> observeAll();
+
+    // The oldest entries still to send, in send order
+    @Query("SELECT * FROM outbox WHERE state != 'failed' ORDER BY seq LIMIT :limit")
+    List<OutboxEntry> getHead(int limit);
+
+    // Entries of a mail that may still be collapsed, newest first
+    @Query("SELECT * FROM outbox WHERE mailId = :mailId AND state = 'pending' ORDER BY seq DESC")
+    List<OutboxEntry> getPendingFor(String mailId);
+
+    // Entries of these mails the server has not confirmed yet, in send order
+    @Query("SELECT * FROM outbox WHERE localId IN (:localIds) AND state != 'failed' ORDER BY seq")
+    List<OutboxEntry> getUnconfirmedFor(List<Long> localIds);
+
+    @Insert
+    long insert(OutboxEntry entry);
+
+    @Update
+    void update(List<OutboxEntry> entries);
+
+    @Delete
+    void delete(List<OutboxEntry> entries);
+
+    // A send cut short by the process dying is sent again
+    @Query("UPDATE outbox SET state = 'pending' WHERE state = 'sending'")
+    void resetSending();
+
+    // Retry now instead of waiting out the backoff, e.g. when the network is back
+    @Query("UPDATE outbox SET nextAttemptAt = 0 WHERE state = 'pending'")
+    void clearBackoff();
+
+    @Query("DELETE FROM outbox WHERE state = 'failed'")
+    void clearFailed();
+
+    @Query("DELETE FROM outbox")
+    void clearAll();
+}
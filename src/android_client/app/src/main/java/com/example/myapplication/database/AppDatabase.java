@@ -1,15 +1,59 @@
 package com.example.myapplication.database;
 
+import android.content.Context;
+
 import androidx.room.Database;
+import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.myapplication.dao.LabelDao;
 import com.example.myapplication.dao.MailDao;
+import com.example.myapplication.dao.OutboxDao;
 import com.example.myapplication.models.Converters;
+import com.example.myapplication.models.Label;
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.MailFts;
+import com.example.myapplication.models.OutboxEntry;
+import com.example.myapplication.repository.MailRepository;
+import com.example.myapplication.utils.AppExecutors;
 
-@Database(entities = {Mail.class}, version = 2, exportSchema = false)
+@Database(entities = {Mail.class, MailFts.class, Label.class, OutboxEntry.class}, version = 10, exportSchema = false)
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
+    private static AppDatabase instance;
+
     public abstract MailDao mailDao();
+
+    public abstract LabelDao labelDao();
+
+    public abstract OutboxDao outboxDao();
+
+    public static synchronized AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = Room.databaseBuilder(
+                            context.getApplicationContext(),
+                            AppDatabase.class,
+                            "doar_app_db"           // Name of the database file
+                    )
+                    .fallbackToDestructiveMigration()
+                    // LiveData queries share the app's IO threads and show up in their metrics
+                    .setQueryExecutor(AppExecutors.getInstance().io())
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onCreate(SupportSQLiteDatabase db) {
+                            MailRepository.resetSyncToken(appContext);
+                        }
+
+                        @Override
+                        public void onDestructiveMigration(SupportSQLiteDatabase db) {
+                            MailRepository.resetSyncToken(appContext);
+                        }
+                    })
+                    .build();
+        }
+        return instance;
+    }
 }
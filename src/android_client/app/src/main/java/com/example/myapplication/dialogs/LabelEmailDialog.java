@@ -16,10 +16,10 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.DialogFragment;
 
 import com.example.myapplication.R;
-import com.example.myapplication.api.ApiClient;
-import com.example.myapplication.api.ApiService;
+import com.example.myapplication.labels.LabelStore;
 import com.example.myapplication.models.Label;
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.repository.Outbox;
 import com.example.myapplication.utils.AuthManager;
 import com.google.android.material.button.MaterialButton;
 
@@ -28,11 +28,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
-import android.util.Log;
-
 public class LabelEmailDialog extends DialogFragment {
 
     private static final String ARG_MAIL_IDS = "mail_ids";
@@ -44,7 +39,6 @@ public class LabelEmailDialog extends DialogFragment {
     private TextView titleText;
     private TextView labelBadge;
     private OnLabelsAppliedListener listener;
-    private ApiService apiService;
     private AuthManager authManager;
 
     private List<Label> allLabels = new ArrayList<>();
@@ -53,7 +47,8 @@ public class LabelEmailDialog extends DialogFragment {
     private String mailSubject;
 
     public interface OnLabelsAppliedListener {
-        void onLabelsApplied();
+        // labelIds holds the labels applied to every mail; mailIds are server ids
+        void onLabelsApplied(List<String> labelIds, Set<String> mailIds);
     }
 
     public static LabelEmailDialog newInstance(Set<String> mailIds, boolean isSingleMail, String mailSubject) {
@@ -119,7 +114,6 @@ public class LabelEmailDialog extends DialogFragment {
     }
 
     private void setupAPI() {
-        apiService = ApiClient.getInstance().getApiService();
         authManager = AuthManager.getInstance(requireContext());
     }
 
@@ -131,27 +125,20 @@ public class LabelEmailDialog extends DialogFragment {
         });
     }
 
+    // Shown from the app-wide label store; the network is only asked when the labels are stale
     private void loadLabels() {
-        Call<List<Label>> call = apiService.getLabels(authManager.getBearerToken());
-        call.enqueue(new Callback<List<Label>>() {
-            @Override
-            public void onResponse(Call<List<Label>> call, Response<List<Label>> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    allLabels = response.body();
-                    displayLabels();
-                } else {
-                    showError("Failed to load labels");
-                }
-            }
-
-            @Override
-            public void onFailure(Call<List<Label>> call, Throwable t) {
-                showError("Network error: " + t.getMessage());
-            }
+        LabelStore labelStore = LabelStore.getInstance(requireContext());
+        labelStore.getLabels().observe(this, labels -> {
+            allLabels = labels;
+            displayLabels();
         });
+        labelStore.refreshIfStale(authManager.getBearerToken());
     }
 
     private void displayLabels() {
+        // Keep the user's choice when the labels change while the dialog is open
+        View checked = labelsContainer.findViewById(labelsContainer.getCheckedRadioButtonId());
+        Object checkedLabelId = checked != null ? checked.getTag() : null;
         labelsContainer.removeAllViews();
         labelBadge.setVisibility(View.GONE); // Hide badge initially
         if (allLabels.isEmpty()) {
@@ -184,6 +171,9 @@ public class LabelEmailDialog extends DialogFragment {
                     labelBadge.setVisibility(View.VISIBLE);
                 }
             });
+            if (label.getId().equals(checkedLabelId)) {
+                radioButton.setChecked(true);
+            }
         }
     }
 
@@ -210,56 +200,16 @@ public class LabelEmailDialog extends DialogFragment {
     }
 
     private void applyLabelsToEmails(List<String> labelIds) {
-        int totalOperations = mailIds.size() * labelIds.size();
-        int[] completedOperations = {0};
-
-        for (String mailId : mailIds) {
-            for (String labelId : labelIds) {
-                java.util.Map<String, String> body = new java.util.HashMap<>();
-                body.put("mailId", mailId);
-                Log.d("LabelDebug", "Assigning mailId " + mailId + " to labelId " + labelId);
-                Log.d("LabelDebug", "Request body: " + body.toString());
-                Call<ApiService.ApiResponse> call = apiService.addMailToLabel(authManager.getBearerToken(), labelId, body);
-                call.enqueue(new Callback<ApiService.ApiResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                        Log.d("LabelDebug", "Response code: " + response.code());
-                        if (response.isSuccessful()) {
-                            Log.d("LabelDebug", "Label applied successfully!");
-                        } else {
-                            try {
-                                Log.d("LabelDebug", "Failed to apply label. Error body: " + (response.errorBody() != null ? response.errorBody().string() : "null"));
-                            } catch (Exception e) {
-                                Log.d("LabelDebug", "Failed to read error body: " + e.getMessage());
-                            }
-                        }
-                        completedOperations[0]++;
-                        if (completedOperations[0] == totalOperations) {
-                            // All operations completed
-                            if (listener != null) {
-                                listener.onLabelsApplied();
-                            }
-                            dismiss();
-                            showSuccess("Labels applied successfully");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                        Log.d("LabelDebug", "Network error: " + t.getMessage());
-                        completedOperations[0]++;
-                        // Continue even if some operations fail
-                        if (completedOperations[0] == totalOperations) {
-                            if (listener != null) {
-                                listener.onLabelsApplied();
-                            }
-                            dismiss();
-                            showError("Some labels may not have been applied");
-                        }
-                    }
-                });
-            }
+        // One queued batch per label; the outbox sends it once the server is reachable
+        Outbox outbox = Outbox.getInstance(requireContext());
+        for (String labelId : labelIds) {
+            outbox.submitLabel(labelId, mailIds);
+        }
+        if (listener != null) {
+            listener.onLabelsApplied(labelIds, mailIds);
         }
+        dismiss();
+        showSuccess("Labels applied successfully");
     }
 
     private void showError(String message) {
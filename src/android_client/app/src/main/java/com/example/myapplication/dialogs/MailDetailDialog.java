@@ -20,9 +20,15 @@ import com.example.myapplication.MailFolder;
 import com.example.myapplication.R;
 import com.example.myapplication.api.ApiClient;
 import com.example.myapplication.api.ApiService;
+import com.example.myapplication.api.ResponseProcessor;
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.repository.MailRepository;
+import com.example.myapplication.repository.Outbox;
 import com.example.myapplication.utils.AuthManager;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -30,8 +36,9 @@ import retrofit2.Response;
 
 public class MailDetailDialog extends DialogFragment {
     
-    private static final String ARG_MAIL_ID = "mail_id";
+    private static final String ARG_MAIL = "mail";
     private static final String ARG_FOLDER = "folder";
+    private static final String ARG_MARK_READ = "mark_read";
     
     // UI Components
     private TextView tvSubject, tvFromName, tvFromEmail, tvToName, tvToEmail, tvDate, tvBody;
@@ -41,30 +48,25 @@ public class MailDetailDialog extends DialogFragment {
     // Data
     private ApiService apiService;
     private AuthManager authManager;
+    private MailRepository repository;
+    private Outbox outbox;
     private Mail currentMail;
     private String mailId;
     private MailFolder currentFolder;
+    private boolean markRead; // The mail was unread when opened; tell the server
+    private Call<Mail> detailCall;
     
-    // Listeners
-    private OnMailUpdatedListener onMailUpdatedListener;
-    
-    public interface OnMailUpdatedListener {
-        void onMailUpdated();
-    }
-    
-    public static MailDetailDialog newInstance(String mailId, MailFolder folder) {
+    // Opens showing the list's copy of the mail; markRead when it was unread
+    public static MailDetailDialog newInstance(Mail mail, MailFolder folder, boolean markRead) {
         MailDetailDialog dialog = new MailDetailDialog();
         Bundle args = new Bundle();
-        args.putString(ARG_MAIL_ID, mailId);
+        args.putSerializable(ARG_MAIL, mail.copy());
         args.putSerializable(ARG_FOLDER, folder);
+        args.putBoolean(ARG_MARK_READ, markRead);
         dialog.setArguments(args);
         return dialog;
     }
     
-    public void setOnMailUpdatedListener(OnMailUpdatedListener listener) {
-        this.onMailUpdatedListener = listener;
-    }
-    
     @NonNull
     @Override
     public Dialog onCreateDialog(Bundle savedInstanceState) {
@@ -72,13 +74,19 @@ public class MailDetailDialog extends DialogFragment {
         
         // Get arguments
         if (getArguments() != null) {
-            mailId = getArguments().getString(ARG_MAIL_ID);
+            currentMail = (Mail) getArguments().getSerializable(ARG_MAIL);
             currentFolder = (MailFolder) getArguments().getSerializable(ARG_FOLDER);
+            markRead = getArguments().getBoolean(ARG_MARK_READ);
+        }
+        if (currentMail != null) {
+            mailId = currentMail.get_id();
         }
         
         // Initialize API
         apiService = ApiClient.getInstance().getApiService();
         authManager = AuthManager.getInstance(requireContext());
+        repository = MailRepository.getInstance(requireContext());
+        outbox = Outbox.getInstance(requireContext());
         
         // Inflate the layout
         LayoutInflater inflater = requireActivity().getLayoutInflater();
@@ -90,8 +98,9 @@ public class MailDetailDialog extends DialogFragment {
         // Setup click listeners
         setupClickListeners();
         
-        // Load mail data
-        loadMailDetails();
+        // Show what the list already has, then fetch only what it lacks
+        populateMailDetails();
+        loadMissingDetails();
         
         builder.setView(view);
         
@@ -136,30 +145,89 @@ public class MailDetailDialog extends DialogFragment {
         btnRestore.setOnClickListener(v -> restoreFromTrash());
     }
     
-    private void loadMailDetails() {
+    // Rows from Room carry no attachments; those come from the full mail
+    private void loadMissingDetails() {
         if (mailId == null) return;
-        
-        apiService.getMailById(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<Mail>() {
-                    @Override
-                    public void onResponse(Call<Mail> call, Response<Mail> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            currentMail = response.body();
-                            currentMail.convertIdFromString(); // Convert ObjectId to int
-                            populateMailDetails();
-                            loadStarredStatus(); // Load current starred status
-                        } else {
-                            showError("Failed to load mail details");
-                            dismiss();
-                        }
-                    }
-                    
-                    @Override
-                    public void onFailure(Call<Mail> call, Throwable t) {
-                        showError("Network error: " + t.getMessage());
-                        dismiss();
-                    }
-                });
+
+        if (currentMail.getAttachments() == null) {
+            Mail prefetched = repository.getCachedDetail(mailId);
+            if (prefetched == null) {
+                // Fetching the full mail also marks it read on the server
+                fetchDetails();
+                return;
+            }
+            // Fetched with peek; the row is newer for read and starred
+            applyDetails(prefetched);
+        }
+        if (markRead) {
+            sendRead();
+        }
+    }
+
+    private void fetchDetails() {
+        detailCall = apiService.getMailById(authManager.getBearerToken(), mailId, null);
+        detailCall.enqueue(new Callback<Mail>() {
+            @Override
+            public void onResponse(Call<Mail> call, Response<Mail> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    ResponseProcessor.getInstance().process("mail detail", response.body(), MailDetailDialog::prepareDetails, mail -> {
+                        detailCall = null;
+                        if (!isAdded()) return;
+                        // Like the peek path: the row is newer for read and starred
+                        applyDetails(mail);
+                    }, error -> {
+                        // The server answered, so it already marked the mail read
+                        detailCall = null;
+                        if (!isAdded()) return;
+                        showError("Failed to load attachments");
+                    });
+                } else {
+                    detailCall = null;
+                    if (!isAdded()) return;
+                    // The list's copy stays up, only the attachments are missing
+                    showError("Failed to load attachments");
+                    if (markRead) sendRead();
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Mail> call, Throwable t) {
+                detailCall = null;
+                if (markRead) sendRead();
+                if (!isAdded() || call.isCanceled()) return;
+                showError("Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    // Off the main thread: the attachments the dialog lists, as an immutable list
+    private static Mail prepareDetails(Mail mail) {
+        mail.convertIdFromString();
+        mail.setAttachments(mail.getAttachments() != null
+                ? Collections.unmodifiableList(new ArrayList<>(mail.getAttachments()))
+                : Collections.emptyList());
+        return mail;
+    }
+
+    private void applyDetails(Mail mail) {
+        if (mail.getBodyPreview() != null) {
+            currentMail.setBodyPreview(mail.getBodyPreview());
+        }
+        currentMail.setAttachments(mail.getAttachments() != null ? mail.getAttachments() : new ArrayList<>());
+        populateMailDetails();
+    }
+
+    private void sendRead() {
+        outbox.submit(Outbox.OP_READ, currentMail);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (detailCall != null) {
+            detailCall.cancel();
+            detailCall = null;
+        }
     }
     
     private void populateMailDetails() {
@@ -273,27 +341,6 @@ public class MailDetailDialog extends DialogFragment {
         }
     }
     
-    private void loadStarredStatus() {
-        if (mailId == null) return;
-        
-        apiService.isMailStarred(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<ApiService.StarredResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.StarredResponse> call, 
-                                         Response<ApiService.StarredResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            currentMail.setStarred(response.body().isStarred());
-                            updateStarButton();
-                        }
-                    }
-                    
-                    @Override
-                    public void onFailure(Call<ApiService.StarredResponse> call, Throwable t) {
-                        // Ignore failure for starred status - not critical
-                    }
-                });
-    }
-    
     private void loadAttachments() {
         if (currentMail.getAttachments() == null || currentMail.getAttachments().isEmpty()) {
             attachmentsContainer.setVisibility(View.GONE);
@@ -329,83 +376,19 @@ public class MailDetailDialog extends DialogFragment {
     private void toggleStar() {
         if (currentMail == null) return;
         
-        // Optimistically update UI
-        boolean newStarredState = !currentMail.isStarred();
-        currentMail.setStarred(newStarredState);
+        // The outbox updates Room now and the server when it can
+        currentMail.setStarred(!currentMail.isStarred());
         updateStarButton();
-        
-        // Call API to toggle star
-        apiService.toggleStar(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<ApiService.ToggleStarResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ToggleStarResponse> call, 
-                                         Response<ApiService.ToggleStarResponse> response) {
-                        if (response.isSuccessful() && response.body() != null) {
-                            // Update with server response
-                            currentMail.setStarred(response.body().isStarred());
-                            updateStarButton();
-                            notifyMailUpdated();
-                        } else {
-                            // Revert optimistic update on failure
-                            currentMail.setStarred(!newStarredState);
-                            updateStarButton();
-                            showError("Failed to toggle star");
-                        }
-                    }
-                    
-                    @Override
-                    public void onFailure(Call<ApiService.ToggleStarResponse> call, Throwable t) {
-                        // Revert optimistic update on failure
-                        currentMail.setStarred(!newStarredState);
-                        updateStarButton();
-                        showError("Network error: " + t.getMessage());
-                    }
-                });
+        outbox.submit(currentMail.isStarred() ? Outbox.OP_STAR : Outbox.OP_UNSTAR, currentMail);
     }
     
     private void toggleSpam() {
         if (currentMail == null) return;
         
         if (currentFolder == MailFolder.SPAM) {
-            // Unspam
-            apiService.unmarkAsSpam(authManager.getBearerToken(), mailId)
-                    .enqueue(new Callback<ApiService.ApiResponse>() {
-                        @Override
-                        public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                            if (response.isSuccessful()) {
-                                showError("Mail unmarked as spam");
-                                notifyMailUpdated();
-                                dismiss();
-                            } else {
-                                showError("Failed to unmark as spam");
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                            showError("Network error: " + t.getMessage());
-                        }
-                    });
+            submitAndDismiss(Outbox.OP_UNSPAM, "Mail unmarked as spam");
         } else {
-            // Report as spam
-            apiService.markAsSpam(authManager.getBearerToken(), mailId)
-                    .enqueue(new Callback<ApiService.ApiResponse>() {
-                        @Override
-                        public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                            if (response.isSuccessful()) {
-                                showError("Mail marked as spam");
-                                notifyMailUpdated();
-                                dismiss();
-                            } else {
-                                showError("Failed to mark as spam");
-                            }
-                        }
-
-                        @Override
-                        public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                            showError("Network error: " + t.getMessage());
-                        }
-                    });
+            submitAndDismiss(Outbox.OP_SPAM, "Mail marked as spam");
         }
     }
     
@@ -418,88 +401,29 @@ public class MailDetailDialog extends DialogFragment {
                     .setTitle("Permanently delete")
                     .setMessage("Are you sure you want to permanently delete this mail?")
                     .setPositiveButton("Delete", (dialog, which) -> {
-                        permanentlyDeleteMail();
+                        submitAndDismiss(Outbox.OP_DELETE, "Mail permanently deleted");
                     })
                     .setNegativeButton("Cancel", null)
                     .show();
         } else {
-            // Move to trash
-            moveMailToTrash();
+            submitAndDismiss(Outbox.OP_TRASH, "Mail moved to trash");
         }
     }
     
     private void restoreFromTrash() {
         if (currentMail == null) return;
         
-        apiService.restoreFromTrash(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<ApiService.ApiResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                        if (response.isSuccessful()) {
-                            showError("Mail restored from trash");
-                            notifyMailUpdated();
-                            dismiss();
-                        } else {
-                            showError("Failed to restore mail from trash");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                        showError("Network error: " + t.getMessage());
-                    }
-                });
+        submitAndDismiss(Outbox.OP_RESTORE, "Mail restored from trash");
     }
     
-    private void moveMailToTrash() {
-        apiService.moveToTrash(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<ApiService.ApiResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                        if (response.isSuccessful()) {
-                            showError("Mail moved to trash");
-                            notifyMailUpdated();
-                            dismiss();
-                        } else {
-                            showError("Failed to move mail to trash");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                        showError("Network error: " + t.getMessage());
-                    }
-                });
-    }
-
-    private void permanentlyDeleteMail() {
-        apiService.permanentlyDelete(authManager.getBearerToken(), mailId)
-                .enqueue(new Callback<ApiService.ApiResponse>() {
-                    @Override
-                    public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
-                        if (response.isSuccessful()) {
-                            showError("Mail permanently deleted");
-                            notifyMailUpdated();
-                            dismiss();
-                        } else {
-                            showError("Failed to permanently delete mail");
-                        }
-                    }
-
-                    @Override
-                    public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
-                        showError("Network error: " + t.getMessage());
-                    }
-                });
+    // Moves take the mail out of the folder on screen, so the dialog closes right away
+    private void submitAndDismiss(String op, String message) {
+        outbox.submit(op, currentMail);
+        showError(message);
+        dismiss();
     }
 
     private void showError(String message) {
         Toast.makeText(requireContext(), message, Toast.LENGTH_SHORT).show();
     }
-    
-    private void notifyMailUpdated() {
-        if (onMailUpdatedListener != null) {
-            onMailUpdatedListener.onMailUpdated();
-        }
-    }
 } 
\ No newline at end of file
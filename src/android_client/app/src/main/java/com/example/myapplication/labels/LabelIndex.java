@@ -0,0 +1,168 @@
+package com.example.myapplication.labels;
+
+import com.example.myapplication.models.Label;
+import com.example.myapplication.models.Mail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Labels by id, and the mails carrying each label as a bitset over mail ordinals.
+ * A label filter is built from its bitset and those of its sub-labels, after which
+ * checking a mail is a lookup instead of a scan of its labelIds. Thread safe.
+ */
+public class LabelIndex {
+    private final Map<String, Label> labelsById = new HashMap<>();
+    private final Map<String, List<String>> childrenById = new HashMap<>();
+    private final Map<String, BitSet> mailsByLabel = new HashMap<>();
+
+    // Mails get a dense ordinal the first time they are seen, ordinals are never reused.
+    // Filters read it without the lock: an entry never changes once written.
+    private final Map<Long, Integer> ordinalByMailId = new ConcurrentHashMap<>();
+    private int ordinalCount;
+
+    /**
+     * Mails carrying a label or one of its sub-labels, as a bitset over mail ordinals.
+     * Immutable, so it can be handed to a background thread; mails seen after it was
+     * built are not in it.
+     */
+    public static final class Filter {
+        private final BitSet mails;
+        private final int size;
+        private final Map<Long, Integer> ordinalByMailId;
+
+        private Filter(BitSet mails, Map<Long, Integer> ordinalByMailId) {
+            this.mails = mails;
+            this.size = mails.cardinality();
+            this.ordinalByMailId = ordinalByMailId;
+        }
+
+        public boolean contains(long mailId) {
+            Integer ordinal = ordinalByMailId.get(mailId);
+            return ordinal != null && mails.get(ordinal);
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    // Replace every label, and the mails they carry according to Label.mailIds
+    public synchronized void setLabels(List<Label> labels) {
+        labelsById.clear();
+        childrenById.clear();
+        mailsByLabel.clear();
+        for (Label label : labels) {
+            labelsById.put(label.getId(), label);
+            addMailIds(label);
+        }
+        rebuildChildren();
+    }
+
+    // Add or update one label; its mails are kept when the response does not list them
+    public synchronized void put(Label label) {
+        labelsById.put(label.getId(), label);
+        if (label.getMailIds() != null) {
+            mailsByLabel.remove(label.getId());
+            addMailIds(label);
+        }
+        rebuildChildren();
+    }
+
+    public synchronized void remove(String labelId) {
+        labelsById.remove(labelId);
+        mailsByLabel.remove(labelId);
+        rebuildChildren();
+    }
+
+    public synchronized Label get(String labelId) {
+        return labelsById.get(labelId);
+    }
+
+    // A label was applied to mails, given by server id
+    public synchronized void addMails(String labelId, Collection<String> serverMailIds) {
+        BitSet mails = bitsOf(labelId);
+        for (String serverId : serverMailIds) {
+            mails.set(ordinalOf(Mail.localIdOf(serverId)));
+        }
+    }
+
+    // Add the labels loaded mails carry. Rows can lag behind a label change made here,
+    // so they never clear a bit; removals come from the label lists of the server.
+    public synchronized void indexMails(List<Mail> mails) {
+        for (Mail mail : mails) {
+            if (mail.getLabelIds() == null || mail.getLabelIds().isEmpty()) continue;
+            int ordinal = ordinalOf(mail.getId());
+            for (String labelId : mail.getLabelIds()) {
+                bitsOf(labelId).set(ordinal);
+            }
+        }
+    }
+
+    // Mails of the label and, through parentId, of all of its sub-labels
+    public synchronized Filter filter(String labelId) {
+        BitSet union = new BitSet();
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(labelId);
+        while (!pending.isEmpty()) {
+            String id = pending.pop();
+            if (!visited.add(id)) continue; // parentId cycles
+            BitSet mails = mailsByLabel.get(id);
+            if (mails != null) union.or(mails);
+            List<String> children = childrenById.get(id);
+            if (children != null) {
+                for (String child : children) pending.push(child);
+            }
+        }
+        return new Filter(union, ordinalByMailId);
+    }
+
+    private void addMailIds(Label label) {
+        if (label.getMailIds() == null) return;
+        BitSet mails = bitsOf(label.getId());
+        for (String serverId : label.getMailIds()) {
+            mails.set(ordinalOf(Mail.localIdOf(serverId)));
+        }
+    }
+
+    private void rebuildChildren() {
+        childrenById.clear();
+        for (Label label : labelsById.values()) {
+            String parentId = label.getParentId();
+            if (parentId != null) {
+                List<String> children = childrenById.get(parentId);
+                if (children == null) {
+                    children = new ArrayList<>();
+                    childrenById.put(parentId, children);
+                }
+                children.add(label.getId());
+            }
+        }
+    }
+
+    private BitSet bitsOf(String labelId) {
+        BitSet bits = mailsByLabel.get(labelId);
+        if (bits == null) {
+            bits = new BitSet();
+            mailsByLabel.put(labelId, bits);
+        }
+        return bits;
+    }
+
+    private int ordinalOf(long mailId) {
+        Integer ordinal = ordinalByMailId.get(mailId);
+        if (ordinal != null) return ordinal;
+        ordinalByMailId.put(mailId, ordinalCount);
+        return ordinalCount++;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.myapplication.labels;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.api.ResponseProcessor;
+import com.example.myapplication.dao.LabelDao;
+import com.example.myapplication.database.AppDatabase;
+import com.example.myapplication.models.Label;
+import com.example.myapplication.utils.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * The user's labels for the whole app. Screens observe {@link #getLabels()}; the list
+ * comes from Room on a cold start and is replaced by the server's on refresh. Label
+ * mutations go through here and their responses are applied locally, with no refetch.
+ * Main thread only, apart from the Room writes and sorting whole lists.
+ */
+public class LabelStore {
+    // refreshIfStale skips the network when the labels are younger than this
+    public static final long MAX_AGE_MS = 5 * 60 * 1000;
+
+    public interface ResultCallback<T> {
+        void onSuccess(T result);
+        void onError(String message);
+    }
+
+    private static LabelStore instance;
+
+    private final ApiService apiService;
+    private final LabelDao labelDao;
+    private final Executor diskIO = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().io());
+    private final MutableLiveData<List<Label>> labels = new MutableLiveData<>(Collections.emptyList());
+    private Map<String, Label> labelsById = new LinkedHashMap<>();
+    private final LabelIndex index = new LabelIndex();
+
+    private Call<List<Label>> refreshCall; // The one in-flight refresh
+    private final List<ResultCallback<List<Label>>> refreshWaiters = new ArrayList<>();
+    private long refreshedAt; // elapsedRealtime of the last server list, 0 before any
+    private boolean loadedFromServer;
+
+    private LabelStore(Context context) {
+        this.apiService = ApiClient.getInstance().getApiService();
+        this.labelDao = AppDatabase.getInstance(context).labelDao();
+        // Render the cached labels until the server answers
+        diskIO.execute(() -> {
+            List<Label> cached = labelDao.getAll();
+            ResponseProcessor.getInstance().process("labels (cached)", cached, LabelStore::prepare, snapshot -> {
+                if (!loadedFromServer) swap(snapshot);
+            });
+        });
+    }
+
+    public static synchronized LabelStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LabelStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public LiveData<List<Label>> getLabels() {
+        return labels;
+    }
+
+    public Label get(String labelId) {
+        return labelsById.get(labelId);
+    }
+
+    // Which mails carry which label, kept in step with the labels here
+    public LabelIndex getIndex() {
+        return index;
+    }
+
+    // Reload from the server; calls made while a refresh is in flight join it
+    public void refresh(String bearerToken, ResultCallback<List<Label>> callback) {
+        if (callback != null) refreshWaiters.add(callback);
+        if (refreshCall != null) return;
+
+        refreshCall = apiService.getLabels(bearerToken);
+        refreshCall.enqueue(new Callback<List<Label>>() {
+            @Override
+            public void onResponse(Call<List<Label>> call, Response<List<Label>> response) {
+                if (call != refreshCall) return; // Dropped by clear()
+                if (response.isSuccessful() && response.body() != null) {
+                    // refreshCall stays set until the swap, so clear() can still drop the list
+                    List<Label> fresh = response.body();
+                    ResponseProcessor.getInstance().process("labels", fresh, LabelStore::prepare, snapshot -> {
+                        if (call != refreshCall) return;
+                        refreshCall = null;
+                        loadedFromServer = true;
+                        refreshedAt = SystemClock.elapsedRealtime();
+                        swap(snapshot);
+                        diskIO.execute(() -> labelDao.replaceAll(fresh));
+                        finishRefresh(snapshot.sorted, null);
+                    }, error -> {
+                        if (call != refreshCall) return;
+                        refreshCall = null;
+                        finishRefresh(null, "Failed to load labels");
+                    });
+                } else {
+                    refreshCall = null;
+                    finishRefresh(null, "Failed to load labels");
+                }
+            }
+
+            @Override
+            public void onFailure(Call<List<Label>> call, Throwable t) {
+                if (call != refreshCall) return;
+                refreshCall = null;
+                finishRefresh(null, "Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    public void refreshIfStale(String bearerToken) {
+        if (refreshedAt == 0 || SystemClock.elapsedRealtime() - refreshedAt > MAX_AGE_MS) {
+            refresh(bearerToken, null);
+        }
+    }
+
+    public void create(String bearerToken, String name, String color, String parentId, ResultCallback<Label> callback) {
+        ApiService.CreateLabelRequest request = new ApiService.CreateLabelRequest(name, color, parentId);
+        apiService.createLabel(bearerToken, request).enqueue(labelCallback(callback));
+    }
+
+    public void update(String bearerToken, String labelId, String name, String color, ResultCallback<Label> callback) {
+        ApiService.UpdateLabelRequest request = new ApiService.UpdateLabelRequest(name, color, null);
+        apiService.updateLabel(bearerToken, labelId, request).enqueue(labelCallback(callback));
+    }
+
+    public void updateColor(String bearerToken, String labelId, String color, ResultCallback<Label> callback) {
+        ApiService.ColorRequest request = new ApiService.ColorRequest(color);
+        apiService.updateLabelColor(bearerToken, labelId, request).enqueue(labelCallback(callback));
+    }
+
+    public void delete(String bearerToken, String labelId, ResultCallback<Void> callback) {
+        apiService.deleteLabel(bearerToken, labelId).enqueue(new Callback<ApiService.ApiResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
+                if (response.isSuccessful()) {
+                    // The server deletes the sub-labels with it
+                    List<String> deleted = subtreeOf(labelId);
+                    for (String id : deleted) {
+                        labelsById.remove(id);
+                        index.remove(id);
+                    }
+                    publish();
+                    diskIO.execute(() -> labelDao.delete(deleted));
+                    callback.onSuccess(null);
+                } else {
+                    callback.onError("Failed to delete label");
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
+                callback.onError("Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    // The label and, through parentId, every label below it
+    private List<String> subtreeOf(String labelId) {
+        List<String> ids = new ArrayList<>();
+        ids.add(labelId);
+        for (int i = 0; i < ids.size(); i++) {
+            String parentId = ids.get(i);
+            for (Label label : labelsById.values()) {
+                // contains() also stops parentId cycles
+                if (parentId.equals(label.getParentId()) && !ids.contains(label.getId())) {
+                    ids.add(label.getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Forget the user's labels, e.g. on logout
+    public void clear() {
+        if (refreshCall != null) {
+            refreshCall.cancel();
+            refreshCall = null;
+        }
+        // Whoever waits on the dropped refresh still hears back
+        finishRefresh(null, "Labels cleared");
+        refreshedAt = 0;
+        loadedFromServer = false;
+        swap(prepare(Collections.emptyList()));
+        diskIO.execute(labelDao::clearAll);
+    }
+
+    // Apply a created or updated label from the server response
+    private Callback<Label> labelCallback(ResultCallback<Label> callback) {
+        return new Callback<Label>() {
+            @Override
+            public void onResponse(Call<Label> call, Response<Label> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    Label label = response.body();
+                    Label previous = labelsById.get(label.getId());
+                    if (label.getMailIds() == null) {
+                        // Create and edit responses do not list the mails
+                        label.setMailIds(previous != null ? previous.getMailIds() : new ArrayList<>());
+                    }
+                    labelsById.put(label.getId(), label);
+                    index.put(label);
+                    publish();
+                    diskIO.execute(() -> labelDao.upsert(label));
+                    callback.onSuccess(label);
+                } else {
+                    callback.onError("Label request failed (" + response.code() + ")");
+                }
+            }
+
+            @Override
+            public void onFailure(Call<Label> call, Throwable t) {
+                callback.onError("Network error: " + t.getMessage());
+            }
+        };
+    }
+
+    private void finishRefresh(List<Label> result, String error) {
+        List<ResultCallback<List<Label>>> waiters = new ArrayList<>(refreshWaiters);
+        refreshWaiters.clear();
+        for (ResultCallback<List<Label>> waiter : waiters) {
+            if (error == null) {
+                waiter.onSuccess(result);
+            } else {
+                waiter.onError(error);
+            }
+        }
+    }
+
+    // A whole label list, made ready for the screens off the main thread
+    private static final class Snapshot {
+        final Map<String, Label> byId;
+        final List<Label> sorted; // Immutable
+
+        Snapshot(Map<String, Label> byId, List<Label> sorted) {
+            this.byId = byId;
+            this.sorted = sorted;
+        }
+    }
+
+    private static Snapshot prepare(List<Label> list) {
+        Map<String, Label> byId = new LinkedHashMap<>();
+        for (Label label : list) {
+            byId.put(label.getId(), label);
+        }
+        List<Label> sorted = new ArrayList<>(byId.values());
+        sorted.sort((a, b) -> compareNames(a.getName(), b.getName()));
+        return new Snapshot(byId, Collections.unmodifiableList(sorted));
+    }
+
+    private void swap(Snapshot snapshot) {
+        labelsById = snapshot.byId;
+        index.setLabels(snapshot.sorted);
+        labels.setValue(snapshot.sorted);
+    }
+
+    // Observers get an immutable copy sorted by name, like the server's list
+    private void publish() {
+        List<Label> sorted = new ArrayList<>(labelsById.values());
+        sorted.sort((a, b) -> compareNames(a.getName(), b.getName()));
+        labels.setValue(Collections.unmodifiableList(sorted));
+    }
+
+    private static int compareNames(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+}
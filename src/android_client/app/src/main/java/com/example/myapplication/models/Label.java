@@ -1,19 +1,29 @@
 package com.example.myapplication.models;
 
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
 import com.google.gson.annotations.SerializedName;
 import java.util.List;
 
+@Entity(tableName = "label")
 public class Label {
+    @PrimaryKey
+    @NonNull
     @SerializedName(value = "id", alternate = {"_id"})
-    private String id;
+    private String id = "";
     private String name;
     private String color;
+    @SerializedName(value = "parentId", alternate = {"parent"})
     private String parentId;
     private List<String> mailIds;
 
     // Constructors
     public Label() {}
 
+    @Ignore
     public Label(String id, String name, String color, String parentId, List<String> mailIds) {
         this.id = id;
         this.name = name;
@@ -23,8 +33,9 @@ public class Label {
     }
 
     // Getters and Setters
+    @NonNull
     public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public void setId(@NonNull String id) { this.id = id; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
     public String getColor() { return color; }
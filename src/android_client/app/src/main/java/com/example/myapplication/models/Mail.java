@@ -10,7 +10,7 @@ import java.util.List;
 @Entity(tableName = "mail")
 public class Mail implements Serializable {
     @PrimaryKey
-    private int id;
+    private long id; // Local key packed from the ObjectId, see localIdOf
     private String _id; // MongoDB ObjectId from server
     private long timestamp; // Server timestamp
     private String from;
@@ -24,7 +24,13 @@ public class Mail implements Serializable {
     private String status;
     private boolean starred;
     private boolean read; // Missing field from server  
-    private String folder; // Missing field from server
+    // Folder of the one view the server sent; the row keeps every folder in folders
+    @Ignore
+    private String folder;
+    // Every folder the mail is in, as ",inbox,sent,"; a self-sent mail has two views
+    private String folders;
+    // The folders before a local move to trash or spam, where restore and unspam put it back
+    private String movedFrom;
     private List<String> labelIds;
     @Ignore
     private List<Attachment> attachments;
@@ -34,7 +40,7 @@ public class Mail implements Serializable {
     public Mail() {}
 
     // Getters
-    public int getId() { return id; }
+    public long getId() { return id; }
     public String get_id() { return _id; }
     public long getTimestamp() { return timestamp; }
     public String getFrom() { return from; }
@@ -49,6 +55,8 @@ public class Mail implements Serializable {
     public boolean isStarred() { return starred; }
     public boolean isRead() { return read; }
     public String getFolder() { return folder; }
+    public String getFolders() { return folders; }
+    public String getMovedFrom() { return movedFrom; }
     public List<String> getLabelIds() { return labelIds; }
     public List<Attachment> getAttachments() { return attachments; }
     public String getFromPicture() {
@@ -56,7 +64,7 @@ public class Mail implements Serializable {
     }
 
     // Setters
-    public void setId(int id) { this.id = id; }
+    public void setId(long id) { this.id = id; }
     public void set_id(String _id) { this._id = _id; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     public void setFrom(String from) { this.from = from; }
@@ -71,6 +79,8 @@ public class Mail implements Serializable {
     public void setStarred(boolean starred) { this.starred = starred; }
     public void setRead(boolean read) { this.read = read; }
     public void setFolder(String folder) { this.folder = folder; }
+    public void setFolders(String folders) { this.folders = folders; }
+    public void setMovedFrom(String movedFrom) { this.movedFrom = movedFrom; }
     public void setLabelIds(List<String> labelIds) { this.labelIds = labelIds; }
     public void setAttachments(List<Attachment> attachments) { this.attachments = attachments; }
     public void setFromPicture(String fromPicture) {
@@ -95,15 +105,81 @@ public class Mail implements Serializable {
         return "To: " + (recipient != null ? recipient : "Unknown") + " - " + subject;
     }
     
+    // Shallow copy, for screens that change a mail the list still shows
+    public Mail copy() {
+        Mail copy = new Mail();
+        copy.id = id;
+        copy._id = _id;
+        copy.timestamp = timestamp;
+        copy.from = from;
+        copy.fromName = fromName;
+        copy.to = to;
+        copy.toName = toName;
+        copy.subject = subject;
+        copy.bodyPreview = bodyPreview;
+        copy.date = date;
+        copy.time = time;
+        copy.status = status;
+        copy.starred = starred;
+        copy.read = read;
+        copy.folder = folder;
+        copy.folders = folders;
+        copy.movedFrom = movedFrom;
+        copy.labelIds = labelIds;
+        copy.attachments = attachments;
+        copy.fromPicture = fromPicture;
+        return copy;
+    }
+
+    public boolean isInFolder(String folder) {
+        return folders != null && folders.contains("," + folder + ",");
+    }
+
+    // The folder set plus the folder of this mail's view. Trash holds the mail's
+    // only view on the server, so moving in or out of it replaces the set.
+    public static String withFolder(String folders, String folder) {
+        if (folder == null) return folders;
+        if (folders == null || folders.isEmpty() || "trash".equals(folder) || folders.equals(",trash,")) {
+            return "," + folder + ",";
+        }
+        return folders.contains("," + folder + ",") ? folders : folders + folder + ",";
+    }
+
     // Utility method to convert MongoDB ObjectId to integer for local use
     public void convertIdFromString() {
         if (_id != null && !_id.isEmpty()) {
-            // Use hashCode of the ObjectId string as integer ID for local storage
-            this.id = Math.abs(_id.hashCode());
+            this.id = localIdOf(_id);
+        }
+    }
+
+    // Pack an ObjectId into a long: its 4-byte timestamp in the high half, then the
+    // last byte of its per-process random and its 3-byte counter. The server never
+    // hands out the same (second, counter) twice per process, so ids only collide
+    // across server processes that also share that random byte.
+    public static long localIdOf(String objectId) {
+        if (objectId.length() != 24) {
+            return fallbackIdOf(objectId);
+        }
+        try {
+            long seconds = Long.parseLong(objectId.substring(0, 8), 16);
+            long low = Long.parseLong(objectId.substring(16, 24), 16); // random byte + counter
+            return (seconds << 32) | low;
+        } catch (NumberFormatException e) {
+            return fallbackIdOf(objectId);
+        }
+    }
+
+    // 64-bit FNV-1a hash for ids that are not ObjectIds
+    private static long fallbackIdOf(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
         }
+        return hash;
     }
 
-    public static class Attachment {
+    public static class Attachment implements Serializable {
         private String originalName;
         private String mimetype;
         private int size;
@@ -0,0 +1,33 @@
+package com.example.myapplication.models;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index over the searchable columns of {@link Mail}.
+ * Room keeps it in step with the mail table through triggers, so every
+ * insert, update and delete of a mail row updates the index as well.
+ */
+@Fts4(contentEntity = Mail.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "mail_fts")
+public class MailFts {
+    // Column order matters, MailFtsQuery weights matchinfo columns by position
+    private String subject;
+    private String from;
+    private String fromName;
+    private String to;
+    private String bodyPreview;
+
+    public String getSubject() { return subject; }
+    public String getFrom() { return from; }
+    public String getFromName() { return fromName; }
+    public String getTo() { return to; }
+    public String getBodyPreview() { return bodyPreview; }
+
+    public void setSubject(String subject) { this.subject = subject; }
+    public void setFrom(String from) { this.from = from; }
+    public void setFromName(String fromName) { this.fromName = fromName; }
+    public void setTo(String to) { this.to = to; }
+    public void setBodyPreview(String bodyPreview) { this.bodyPreview = bodyPreview; }
+}
@@ -0,0 +1,15 @@
+package com.example.myapplication.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+/**
+ * A mail returned by a full-text search together with its raw matchinfo blob.
+ */
+public class MailMatch {
+    @Embedded
+    public Mail mail;
+
+    @ColumnInfo(name = "matchinfo")
+    public byte[] matchInfo;
+}
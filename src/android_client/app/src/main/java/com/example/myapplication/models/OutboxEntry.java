@@ -0,0 +1,62 @@
+package com.example.myapplication.models;
+
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One mutation of one mail waiting to reach the server, already applied locally.
+ * Entries are sent in seq order; op is a batch operation of POST /api/mails/batch.
+ */
+@Entity(tableName = "outbox", indices = {@Index("mailId"), @Index({"localId", "state"})})
+public class OutboxEntry {
+    public static final String STATE_PENDING = "pending";
+    public static final String STATE_SENDING = "sending";
+    public static final String STATE_FAILED = "failed"; // Rejected by the server, not retried
+
+    @PrimaryKey(autoGenerate = true)
+    private long seq;
+    private String op;
+    private String mailId; // Server id
+    private long localId;
+    private String labelId; // Only for the label op
+    private String state = STATE_PENDING;
+    private int attempts;
+    private long nextAttemptAt; // System.currentTimeMillis(), 0 to send right away
+    private String error;
+
+    public OutboxEntry() {}
+
+    @Ignore
+    public OutboxEntry(String op, Mail mail, String labelId) {
+        this(op, mail.get_id(), mail.getId(), labelId);
+    }
+
+    @Ignore
+    public OutboxEntry(String op, String mailId, long localId, String labelId) {
+        this.op = op;
+        this.mailId = mailId;
+        this.localId = localId;
+        this.labelId = labelId;
+    }
+
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+    public String getMailId() { return mailId; }
+    public void setMailId(String mailId) { this.mailId = mailId; }
+    public long getLocalId() { return localId; }
+    public void setLocalId(long localId) { this.localId = localId; }
+    public String getLabelId() { return labelId; }
+    public void setLabelId(String labelId) { this.labelId = labelId; }
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public long getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(long nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,127 @@
+package com.example.myapplication.repository;
+
+import android.content.ComponentCallbacks2;
+import android.os.Parcelable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.myapplication.MailFolder;
+import com.example.myapplication.models.Mail;
+
+/**
+ * Folders the user switched away from, least recently used first. Each entry keeps the
+ * folder's pager, whose window still holds the last rows shown, and the list's scroll
+ * state, so switching back paints at once and only revalidates in the background.
+ * Bounded by an estimate of the bytes held by those rows. Main thread only.
+ */
+public class FolderCache {
+    // Rough heap cost of a cached row beyond its strings: object headers, fields, list slot
+    private static final int MAIL_OVERHEAD_BYTES = 160;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    public static final class Entry {
+        private final FolderPager pager;
+        private final Parcelable scrollState;
+        private final long bytes;
+
+        Entry(FolderPager pager, Parcelable scrollState, long bytes) {
+            this.pager = pager;
+            this.scrollState = scrollState;
+            this.bytes = bytes;
+        }
+
+        public FolderPager getPager() { return pager; }
+        public Parcelable getScrollState() { return scrollState; }
+    }
+
+    private final LinkedHashMap<MailFolder, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+
+    public FolderCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Keep the folder being left; evicts the oldest folders beyond the byte budget
+    public void put(FolderPager pager, Parcelable scrollState) {
+        remove(pager.getFolder());
+        FolderPager.Window window = pager.getWindow().getValue();
+        long entryBytes = window != null ? estimateBytes(window.getMails()) : 0;
+        entries.put(pager.getFolder(), new Entry(pager, scrollState, entryBytes));
+        bytes += entryBytes;
+        trimToSize(maxBytes);
+    }
+
+    // Hands the folder's entry back to the caller, which shows it; null when not cached
+    public Entry take(MailFolder folder) {
+        return remove(folder);
+    }
+
+    public void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Called from ComponentCallbacks2.onTrimMemory
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxBytes / 2);
+        }
+    }
+
+    private Entry remove(MailFolder folder) {
+        Entry entry = entries.remove(folder);
+        if (entry != null) {
+            bytes -= entry.bytes;
+        }
+        return entry;
+    }
+
+    private void trimToSize(long limit) {
+        Iterator<Map.Entry<MailFolder, Entry>> it = entries.entrySet().iterator();
+        while (bytes > limit && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    static long estimateBytes(List<Mail> mails) {
+        if (mails == null) return 0;
+        long total = 0;
+        for (Mail mail : mails) {
+            total += MAIL_OVERHEAD_BYTES
+                    + stringBytes(mail.get_id())
+                    + stringBytes(mail.getFrom())
+                    + stringBytes(mail.getFromName())
+                    + stringBytes(mail.getTo())
+                    + stringBytes(mail.getToName())
+                    + stringBytes(mail.getSubject())
+                    + stringBytes(mail.getBodyPreview())
+                    + stringBytes(mail.getDate())
+                    + stringBytes(mail.getTime())
+                    + stringBytes(mail.getStatus())
+                    + stringBytes(mail.getFolders())
+                    + stringBytes(mail.getFromPicture());
+            if (mail.getLabelIds() != null) {
+                for (String labelId : mail.getLabelIds()) {
+                    total += stringBytes(labelId);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.myapplication.repository;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import java.util.List;
+
+import com.example.myapplication.MailFolder;
+import com.example.myapplication.models.Mail;
+
+/**
+ * Pages a folder into the list. The UI observes a bounded window of the Room cache
+ * that slides as the user scrolls, and server pages are fetched ahead of the window.
+ */
+public class FolderPager {
+    public static final int PAGE_SIZE = MailRepository.PAGE_SIZE;
+    // Start loading the next page this many rows before the end of the list
+    public static final int PREFETCH_DISTANCE = 10;
+    // Upper bound on the rows held in memory; older pages slide out of the window
+    private static final int MAX_WINDOW_PAGES = 10;
+
+    // Rows currently shown and the position of the first one inside the folder
+    public static class Window {
+        private final List<Mail> mails;
+        private final int start;
+
+        Window(List<Mail> mails, int start) {
+            this.mails = mails;
+            this.start = start;
+        }
+
+        public List<Mail> getMails() { return mails; }
+        public int getStart() { return start; }
+    }
+
+    private final MailRepository repository;
+    private final MailFolder folder;
+    private final MediatorLiveData<Window> window = new MediatorLiveData<>();
+    private LiveData<List<Mail>> source;
+
+    private int windowStart = 0;
+    private int windowPages = 1;
+    private boolean awaitingWindow = false;
+
+    private int loadedRows = 0; // Rows fetched from the server since the last refresh
+    private String nextCursor;  // Keyset cursor of the next server page
+    private boolean hasMore = true;
+    private boolean loading = false;
+
+    public FolderPager(MailRepository repository, MailFolder folder) {
+        this.repository = repository;
+        this.folder = folder;
+        bindWindow();
+    }
+
+    public MailFolder getFolder() {
+        return folder;
+    }
+
+    public LiveData<Window> getWindow() {
+        return window;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    // Reload the first page from the server
+    public void refresh(String bearerToken, MailRepository.PageCallback callback) {
+        loadedRows = 0;
+        nextCursor = null;
+        hasMore = true;
+        loadPage(bearerToken, null, callback);
+    }
+
+    // Called by the scroll listener with positions relative to the current window
+    public void onScrolled(String bearerToken, int firstVisible, int lastVisible, int itemCount) {
+        if (awaitingWindow) return;
+
+        if (lastVisible >= itemCount - PREFETCH_DISTANCE) {
+            boolean windowFull = itemCount >= windowPages * PAGE_SIZE;
+            if (windowFull) {
+                // More rows may be cached below the window
+                if (windowPages < MAX_WINDOW_PAGES) {
+                    windowPages++;
+                } else {
+                    windowStart += PAGE_SIZE;
+                }
+                bindWindow();
+            }
+            if (hasMore && !loading && windowStart + itemCount >= loadedRows - PREFETCH_DISTANCE) {
+                loadPage(bearerToken, nextCursor, null);
+            }
+        } else if (firstVisible < PREFETCH_DISTANCE && windowStart > 0) {
+            // Scrolling back up - slide the window towards newer mails
+            windowStart = Math.max(0, windowStart - PAGE_SIZE);
+            bindWindow();
+        }
+    }
+
+    private void loadPage(String bearerToken, String cursor, MailRepository.PageCallback callback) {
+        loading = true;
+        repository.loadPage(bearerToken, folder, cursor, new MailRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(String next) {
+                loading = false;
+                loadedRows = (cursor == null ? 0 : loadedRows) + PAGE_SIZE;
+                nextCursor = next;
+                hasMore = next != null;
+                if (callback != null) callback.onPageLoaded(next);
+            }
+
+            @Override
+            public void onError(String message) {
+                loading = false;
+                if (callback != null) callback.onError(message);
+            }
+        });
+    }
+
+    private void bindWindow() {
+        if (source != null) {
+            window.removeSource(source);
+        }
+        awaitingWindow = true;
+        int start = windowStart;
+        source = repository.getMailsForFolder(folder, windowPages * PAGE_SIZE, start);
+        window.addSource(source, mails -> {
+            awaitingWindow = false;
+            window.setValue(new Window(mails, start));
+        });
+    }
+}
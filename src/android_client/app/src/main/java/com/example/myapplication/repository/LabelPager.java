@@ -0,0 +1,101 @@
+package com.example.myapplication.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.api.ResponseProcessor;
+import com.example.myapplication.models.Mail;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Pages the mails of one label and its sub-labels from the server, whatever
+ * folder they are in, matching what the label filter shows locally.
+ * Pages are held in memory only, the folder caches are left alone.
+ */
+public class LabelPager {
+    public interface Listener {
+        // Every mail loaded so far, newest first, as an immutable list; called on the main thread
+        void onMailsChanged(List<Mail> mails);
+    }
+
+    private final ApiService apiService;
+    private final String labelId;
+    private final Listener listener;
+    // Replaced, never changed, so the next page can be appended off the main thread
+    private List<Mail> mails = Collections.emptyList();
+
+    private String nextCursor; // Keyset cursor of the next server page
+    private boolean hasMore = true;
+    private Call<ApiService.PaginatedMailResponse> call;
+
+    public LabelPager(ApiService apiService, String labelId, Listener listener) {
+        this.apiService = apiService;
+        this.labelId = labelId;
+        this.listener = listener;
+    }
+
+    public String getLabelId() {
+        return labelId;
+    }
+
+    // Fetch the next page unless the label was read to the end or a page is in flight
+    public void loadMore(String bearerToken) {
+        if (!hasMore || call != null) return;
+        call = apiService.getLabelMails(bearerToken, labelId, nextCursor, MailRepository.PAGE_SIZE);
+        call.enqueue(new Callback<ApiService.PaginatedMailResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.PaginatedMailResponse> c, Response<ApiService.PaginatedMailResponse> response) {
+                if (c.isCanceled()) return;
+                if (!response.isSuccessful() || response.body() == null || response.body().getMails() == null) {
+                    call = null;
+                    hasMore = false; // The locally known mails of the label stay visible
+                    return;
+                }
+                // The call stays in flight until the page is swapped in, so no other
+                // page is appended to the same list meanwhile
+                List<Mail> loaded = mails;
+                ApiService.PaginatedMailResponse body = response.body();
+                ResponseProcessor.getInstance().process("label page", body, page -> {
+                    List<Mail> next = new ArrayList<>(loaded.size() + page.getMails().size());
+                    next.addAll(loaded);
+                    for (Mail mail : page.getMails()) {
+                        mail.convertIdFromString();
+                        next.add(mail);
+                    }
+                    return Collections.unmodifiableList(next);
+                }, next -> {
+                    if (call != c) return; // Cancelled meanwhile
+                    call = null;
+                    mails = next;
+                    nextCursor = body.getNextCursor();
+                    hasMore = nextCursor != null;
+                    listener.onMailsChanged(next);
+                }, error -> {
+                    if (call != c) return;
+                    call = null;
+                    hasMore = false; // As for a failed response
+                });
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.PaginatedMailResponse> c, Throwable t) {
+                if (c.isCanceled()) return;
+                call = null; // Retried on the next scroll
+            }
+        });
+    }
+
+    // Stop paging, e.g. when another label or a folder is opened
+    public void cancel() {
+        hasMore = false;
+        if (call != null) {
+            call.cancel();
+            call = null;
+        }
+    }
+}
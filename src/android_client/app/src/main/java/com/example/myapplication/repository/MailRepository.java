@@ -1,30 +1,108 @@
 package com.example.myapplication.repository;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
 
 import androidx.lifecycle.LiveData;
-import androidx.room.Room;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+import com.example.myapplication.MailFolder;
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.api.ResponseProcessor;
 import com.example.myapplication.dao.MailDao;
+import com.example.myapplication.dao.OutboxDao;
 import com.example.myapplication.database.AppDatabase;
 import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.OutboxEntry;
+import com.example.myapplication.search.MailFtsQuery;
+import com.example.myapplication.search.TrigramIndex;
+import com.example.myapplication.utils.AppExecutors;
 
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Single source of truth for the mailbox. The UI observes the Room tables,
+ * the network only refreshes them.
+ */
 public class MailRepository {
+    private static final String SYNC_PREFS = "MailSync";
+    private static final String KEY_SYNC_TOKEN = "sync_token";
+    // Folders whose first page was loaded since the token was last reset; the delta
+    // keeps only these up to date
+    private static final String KEY_LOADED_FOLDERS = "loaded_folders";
+    public static final int PAGE_SIZE = 30;
+    // Newest full-text matches that get ranked; older ones are left out
+    public static final int SEARCH_LIMIT = 500;
+    // Ids per getMailsByIds call, below SQLite's bound-variable limit
+    private static final int ID_CHUNK = 500;
+    // Full mails fetched ahead of a tap, by server id
+    private static final int DETAIL_CACHE_SIZE = 50;
+    // A read-back after restore or unspam is retried this often before the next sync takes over
+    private static final int READ_BACK_ATTEMPTS = 6;
+    private static final long READ_BACK_BACKOFF_MS = 2000;
+
+    private static MailRepository instance;
+
+    private final AppDatabase db;
     private final MailDao mailDao;
+    private final OutboxDao outboxDao;
+    private final ApiService apiService;
+    private final ApiService prefetchApiService;
+    private final SharedPreferences syncPrefs;
+    // Room writes in the order they were made
+    private final Executor diskIO = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().io());
+    private final Executor mainThread = AppExecutors.getInstance().main();
+    private final Handler timer = new Handler(Looper.getMainLooper());
+    // Substring index over the cached mails, built on the first search
+    private final TrigramIndex textIndex = new TrigramIndex();
+    private boolean textIndexLoaded; // Guarded by textIndex
+    private final LruCache<String, Mail> details = new LruCache<>(DETAIL_CACHE_SIZE);
 
-    // Constructor
-    public MailRepository(Context context) {
-        AppDatabase db = Room.databaseBuilder(
-                        context.getApplicationContext(),
-                        AppDatabase.class,
-                        "doar_app_db"           // Name of the database file
-                )
-                .fallbackToDestructiveMigration()
-                .build();
+    public interface PageCallback {
+        // nextCursor is null once the folder has been read to the end
+        void onPageLoaded(String nextCursor);
+        void onError(String message);
+    }
 
+    public interface SyncCallback {
+        void onSynced(int changes);
+        // The server cannot produce a delta; reload the visible folder instead.
+        // Every other folder counts as not loaded again.
+        void onResetRequired();
+        void onError(String message);
+    }
+
+    // Constructor
+    private MailRepository(Context context) {
+        this.db = AppDatabase.getInstance(context);
         this.mailDao = db.mailDao();
+        this.outboxDao = db.outboxDao();
+        this.apiService = ApiClient.getInstance().getApiService();
+        this.prefetchApiService = ApiClient.getInstance().getPrefetchApiService();
+        this.syncPrefs = context.getSharedPreferences(SYNC_PREFS, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized MailRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new MailRepository(context.getApplicationContext());
+        }
+        return instance;
     }
 
     // Get all mails
@@ -32,8 +110,502 @@ public class MailRepository {
         return mailDao.getAllMails();
     }
 
+    // A window of the cached mails of a folder, newest first
+    public LiveData<List<Mail>> getMailsForFolder(MailFolder folder, int limit, int offset) {
+        switch (folder) {
+            case STARRED:
+                return mailDao.getStarredMails(limit, offset);
+            case ALL_MAIL:
+                return mailDao.getAllMailMails(limit, offset);
+            default:
+                return mailDao.getMailsInFolder(folder.getServerKey(), limit, offset);
+        }
+    }
+
+    // Fetch the page after the given cursor (null for the first page) and write it into Room
+    public void loadPage(String bearerToken, MailFolder folder, String cursor, PageCallback callback) {
+        enqueuePage(apiService, bearerToken, folder, cursor, callback);
+    }
+
+    // loadPage for the first page, as a background request the caller can cancel
+    public Call<?> prefetchPage(String bearerToken, MailFolder folder, PageCallback callback) {
+        return enqueuePage(prefetchApiService, bearerToken, folder, null, callback);
+    }
+
+    private Call<?> enqueuePage(ApiService api, String bearerToken, MailFolder folder, String cursor, PageCallback callback) {
+        Call<ApiService.PaginatedMailResponse> pageCall = folderCall(api, bearerToken, folder, cursor);
+        pageCall.enqueue(new Callback<ApiService.PaginatedMailResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.PaginatedMailResponse> call, Response<ApiService.PaginatedMailResponse> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().getMails() != null) {
+                    ApiService.PaginatedMailResponse body = response.body();
+                    String nextCursor = body.getNextCursor();
+                    diskIO.execute(() -> {
+                        saveFolderPage(folder, body.getMails(), cursor == null, nextCursor != null);
+                        mainThread.execute(() -> callback.onPageLoaded(nextCursor));
+                    });
+                } else {
+                    callback.onError("Failed to load " + folder.getDisplayName().toLowerCase() + " mails");
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.PaginatedMailResponse> call, Throwable t) {
+                callback.onError("Network error: " + t.getMessage());
+            }
+        });
+        return pageCall;
+    }
+
+    private Call<ApiService.PaginatedMailResponse> folderCall(ApiService api, String bearerToken, MailFolder folder, String cursor) {
+        switch (folder) {
+            case INBOX:
+                return api.getInbox(bearerToken, cursor, PAGE_SIZE);
+            case SENT:
+                return api.getSent(bearerToken, cursor, PAGE_SIZE);
+            case DRAFTS:
+                return api.getDrafts(bearerToken, cursor, PAGE_SIZE);
+            case SPAM:
+                return api.getSpam(bearerToken, cursor, PAGE_SIZE);
+            case TRASH:
+                return api.getTrash(bearerToken, cursor, PAGE_SIZE);
+            case STARRED:
+                return api.getStarred(bearerToken, cursor, PAGE_SIZE);
+            case ALL_MAIL:
+            default:
+                return api.getAllMails(bearerToken, cursor, PAGE_SIZE);
+        }
+    }
+
+    // Pull only what changed since the last sync and apply it to Room
+    public void sync(String bearerToken, SyncCallback callback) {
+        diskIO.execute(() -> {
+            // Open the database first: a freshly created cache drops the token
+            db.getOpenHelper().getWritableDatabase();
+            String since = syncPrefs.getString(KEY_SYNC_TOKEN, null);
+            mainThread.execute(() -> requestDelta(bearerToken, since, callback));
+        });
+    }
+
+    private void requestDelta(String bearerToken, String since, SyncCallback callback) {
+        apiService.sync(bearerToken, since).enqueue(new Callback<ApiService.SyncResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.SyncResponse> call, Response<ApiService.SyncResponse> response) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    callback.onError("Failed to sync mails");
+                    return;
+                }
+                ApiService.SyncResponse body = response.body();
+                if (body.isReset()) {
+                    // The folder reload covers everything up to this token; the
+                    // others missed what changed before it and are reloaded when opened
+                    syncPrefs.edit()
+                            .putString(KEY_SYNC_TOKEN, body.getToken())
+                            .remove(KEY_LOADED_FOLDERS)
+                            .apply();
+                    callback.onResetRequired();
+                    return;
+                }
+                diskIO.execute(() -> {
+                    int changes = applyDelta(body);
+                    saveSyncToken(body.getToken());
+                    mainThread.execute(() -> callback.onSynced(changes));
+                });
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.SyncResponse> call, Throwable t) {
+                callback.onError("Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    // Tombstones first: a mail that left a folder and came back is listed in both.
+    // Must be called off the main thread.
+    private int applyDelta(ApiService.SyncResponse delta) {
+        List<Mail> mails = delta.getMails() != null ? delta.getMails() : new ArrayList<>();
+        List<ApiService.Tombstone> tombstones = delta.getTombstones() != null ? delta.getTombstones() : new ArrayList<>();
+        for (Mail mail : mails) {
+            mail.convertIdFromString();
+        }
+        List<Mail> written = new ArrayList<>();
+        db.runInTransaction(() -> {
+            for (ApiService.Tombstone tombstone : tombstones) {
+                mailDao.removeFromFolder(Mail.localIdOf(tombstone.get_id()), tombstone.getFolder());
+            }
+            written.addAll(upsertViews(mails));
+            deleteFolderless();
+        });
+        indexMails(written);
+        return mails.size() + tombstones.size();
+    }
+
+    // Delete the rows left without a folder and drop them from the substring index.
+    // In a transaction.
+    private void deleteFolderless() {
+        List<Long> ids = mailDao.getFolderlessIds();
+        if (ids.isEmpty()) return;
+        mailDao.deleteFolderless();
+        unindexMails(ids);
+    }
+
+    private void saveSyncToken(String token) {
+        syncPrefs.edit().putString(KEY_SYNC_TOKEN, token).apply();
+    }
+
+    // Whether a delta sync is enough to bring the cached folder up to date
+    public boolean isFolderLoaded(MailFolder folder) {
+        return syncPrefs.getStringSet(KEY_LOADED_FOLDERS, Collections.emptySet()).contains(folder.name());
+    }
+
+    private void markFolderLoaded(MailFolder folder) {
+        Set<String> loaded = new HashSet<>(syncPrefs.getStringSet(KEY_LOADED_FOLDERS, Collections.emptySet()));
+        if (loaded.add(folder.name())) {
+            syncPrefs.edit().putStringSet(KEY_LOADED_FOLDERS, loaded).apply();
+        }
+    }
+
+    // Called by AppDatabase when the cache is created or wiped, so the next
+    // sync starts with a full reload instead of a delta against nothing
+    public static void resetSyncToken(Context context) {
+        context.getSharedPreferences(SYNC_PREFS, Context.MODE_PRIVATE)
+                .edit().remove(KEY_SYNC_TOKEN).remove(KEY_LOADED_FOLDERS).commit();
+    }
+
+    // Upsert a page of a folder and evict rows the server dropped, in one transaction.
+    // Must be called off the main thread.
+    private void saveFolderPage(MailFolder folder, List<Mail> mails, boolean firstPage, boolean hasMore) {
+        List<Long> keepIds = new ArrayList<>(mails.size());
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (Mail mail : mails) {
+            mail.convertIdFromString();
+            keepIds.add(mail.getId());
+            oldest = Math.min(oldest, mail.getTimestamp());
+            newest = Math.max(newest, mail.getTimestamp());
+        }
+        // Only rows inside the window covered by this page can be judged stale:
+        // the first page is open towards newer mails, the last one towards older mails
+        long since = hasMore ? oldest : Long.MIN_VALUE;
+        long until = firstPage ? Long.MAX_VALUE : newest;
+
+        List<Mail> written = new ArrayList<>();
+        db.runInTransaction(() -> {
+            written.addAll(upsertViews(mails));
+            if (folder == MailFolder.STARRED) {
+                mailDao.unstarStale(since, until, keepIds);
+            } else if (folder.getServerKey() != null) {
+                mailDao.removeStaleFromFolder(folder.getServerKey(), since, until, keepIds);
+                deleteFolderless();
+            }
+        });
+        indexMails(written);
+        if (firstPage) markFolderLoaded(folder);
+    }
+
+    // Each server mail is one view of a mail; merge its folder into the folders the
+    // row already has, so a self-sent mail stays in inbox and sent. Changes still in
+    // the outbox are applied again on top, so a refresh does not undo them until the
+    // server has them. Returns the mails written. In a transaction.
+    private List<Mail> upsertViews(List<Mail> mails) {
+        Map<Long, Mail> rows = new HashMap<>();
+        Map<Long, List<OutboxEntry>> pending = new HashMap<>();
+        List<Long> ids = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            ids.add(mail.getId());
+        }
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            List<Long> chunk = ids.subList(i, Math.min(ids.size(), i + ID_CHUNK));
+            for (Mail row : mailDao.getMailsByIds(chunk)) {
+                rows.put(row.getId(), row);
+            }
+            for (OutboxEntry entry : outboxDao.getUnconfirmedFor(chunk)) {
+                List<OutboxEntry> entries = pending.get(entry.getLocalId());
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    pending.put(entry.getLocalId(), entries);
+                }
+                entries.add(entry);
+            }
+        }
+
+        List<Mail> written = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            Mail row = rows.get(mail.getId());
+            mail.setFolders(Mail.withFolder(row != null ? row.getFolders() : null, mail.getFolder()));
+            mail.setMovedFrom(row != null ? row.getMovedFrom() : null);
+            rows.put(mail.getId(), mail); // A delta can list two views of one mail
+            List<OutboxEntry> entries = pending.get(mail.getId());
+            if (entries == null || applyPending(mail, entries)) {
+                written.add(mail);
+            }
+        }
+        mailDao.upsertMails(written);
+        return written;
+    }
+
+    // The local side of Outbox ops, on a mail about to be written. Returns false when
+    // a queued delete means the mail must not be written back.
+    private static boolean applyPending(Mail mail, List<OutboxEntry> entries) {
+        for (OutboxEntry entry : entries) {
+            switch (entry.getOp()) {
+                case Outbox.OP_STAR:
+                case Outbox.OP_UNSTAR:
+                    mail.setStarred(Outbox.OP_STAR.equals(entry.getOp()));
+                    break;
+                case Outbox.OP_READ:
+                    mail.setRead(true);
+                    break;
+                case Outbox.OP_TRASH:
+                case Outbox.OP_SPAM:
+                    // As MailDao.moveToFolder
+                    if (!mail.isInFolder("trash") && !mail.isInFolder("spam")) {
+                        mail.setMovedFrom(mail.getFolders());
+                    }
+                    mail.setFolders(Outbox.OP_TRASH.equals(entry.getOp()) ? ",trash," : ",spam,");
+                    break;
+                case Outbox.OP_RESTORE:
+                case Outbox.OP_UNSPAM:
+                    // As MailDao.moveBack
+                    if (",trash,".equals(mail.getFolders()) || ",spam,".equals(mail.getFolders())) {
+                        mail.setFolders(mail.getMovedFrom() != null ? mail.getMovedFrom() : ",inbox,");
+                        mail.setMovedFrom(null);
+                    }
+                    break;
+                case Outbox.OP_DELETE:
+                    return false;
+                case Outbox.OP_LABEL:
+                    Set<String> labels = new LinkedHashSet<>();
+                    if (mail.getLabelIds() != null) labels.addAll(mail.getLabelIds());
+                    labels.add(entry.getLabelId());
+                    mail.setLabelIds(new ArrayList<>(labels));
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches every cached mail, best matches first: ranked word-prefix hits from
+     * the full-text index, then any other mail containing the query as a substring.
+     * Blocks on the database, so call it from a background thread.
+     */
+    public List<Mail> searchCached(String query) {
+        List<Mail> results = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        String match = MailFtsQuery.toMatch(query);
+        if (match != null) {
+            for (Mail mail : MailFtsQuery.rank(mailDao.searchMails(match, SEARCH_LIMIT))) {
+                if (seen.add(mail.getId())) results.add(mail);
+            }
+        }
+
+        // FTS tokens only match from the start of a word, e.g. not "oar.c" in "doar.com"
+        List<Long> substringIds = new ArrayList<>();
+        for (long id : loadedTextIndex().search(query, SEARCH_LIMIT)) {
+            if (!seen.contains(id)) substringIds.add(id);
+        }
+        if (!substringIds.isEmpty()) {
+            results.addAll(mailDao.getMailsByIds(substringIds));
+        }
+        return results;
+    }
+
+    private TrigramIndex loadedTextIndex() {
+        synchronized (textIndex) {
+            if (!textIndexLoaded) {
+                for (Mail mail : mailDao.getAllMailsNow()) {
+                    textIndex.add(mail);
+                }
+                textIndexLoaded = true;
+            }
+        }
+        return textIndex;
+    }
+
+    // Keep the substring index in step with Room once it is built; every delete
+    // site unindexes its rows, so no stale hit takes a place under SEARCH_LIMIT
+    private void indexMails(List<Mail> mails) {
+        synchronized (textIndex) {
+            if (!textIndexLoaded) return;
+            for (Mail mail : mails) {
+                textIndex.add(mail);
+            }
+        }
+    }
+
+    private void unindexMails(List<Long> mailIds) {
+        synchronized (textIndex) {
+            for (long id : mailIds) {
+                textIndex.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Fetch the full mail ahead of a tap and keep it in memory; the response also
+     * lands in the HTTP cache. Peeks, so the mail stays unread on the server.
+     * Background request the caller can cancel.
+     */
+    public Call<?> prefetchMail(String bearerToken, String serverId, Runnable done) {
+        Call<Mail> mailCall = prefetchApiService.getMailById(bearerToken, serverId, true);
+        mailCall.enqueue(new Callback<Mail>() {
+            @Override
+            public void onResponse(Call<Mail> call, Response<Mail> response) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    done.run();
+                    return;
+                }
+                ResponseProcessor.getInstance().process("prefetched mail", response.body(), mail -> {
+                    mail.convertIdFromString();
+                    return mail;
+                }, mail -> {
+                    details.put(serverId, mail);
+                    done.run();
+                }, error -> done.run());
+            }
+
+            @Override
+            public void onFailure(Call<Mail> call, Throwable t) {
+                done.run();
+            }
+        });
+        return mailCall;
+    }
+
+    // The full mail if it was prefetched, else null
+    public Mail getCachedDetail(String serverId) {
+        return details.get(serverId);
+    }
+
     // Insert a mail
     public void insertMail(final Mail mail) {
-        new Thread(() -> mailDao.insertMail(mail)).start();
+        diskIO.execute(() -> {
+            mail.setFolders(Mail.withFolder(null, mail.getFolder()));
+            mailDao.insertMail(mail);
+            indexMails(Arrays.asList(mail));
+        });
+    }
+
+    public void setStarred(long mailId, boolean starred) {
+        diskIO.execute(() -> mailDao.setStarred(mailId, starred));
+    }
+
+    public void markRead(long mailId) {
+        diskIO.execute(() -> mailDao.markRead(mailId));
+    }
+
+    public void moveToFolder(List<Long> mailIds, String folder) {
+        diskIO.execute(() -> mailDao.moveToFolder(mailIds, folder));
+    }
+
+    // Undo a local move to trash or spam; applyLeftFolder then asks the server where it went
+    public void moveBack(List<Long> mailIds) {
+        diskIO.execute(() -> mailDao.moveBack(mailIds));
+    }
+
+    public void deleteMails(List<Long> mailIds) {
+        diskIO.execute(() -> {
+            mailDao.deleteMails(mailIds);
+            unindexMails(mailIds);
+        });
+    }
+
+    // Mutation results: what the server confirmed is applied to Room, and the
+    // folder observers update the list, instead of refetching the folder
+
+    // A mail created or updated by this user, as compose saved it; it lands in
+    // the sender's own view, which the create response does not describe
+    public void applySaved(Mail mail) {
+        diskIO.execute(() -> {
+            mail.convertIdFromString();
+            mail.setFolder("draft".equals(mail.getStatus()) ? "draft" : "sent");
+            mail.setRead(true);
+            if (mail.getTimestamp() == 0) {
+                mail.setTimestamp(System.currentTimeMillis());
+            }
+            List<Mail> written = new ArrayList<>();
+            db.runInTransaction(() -> {
+                if (!"draft".equals(mail.getFolder())) {
+                    // Sending a draft moves its view out of drafts
+                    mailDao.removeFromFolder(mail.getId(), "draft");
+                }
+                written.addAll(upsertViews(Arrays.asList(mail)));
+            });
+            indexMails(written);
+        });
+    }
+
+    // Labels applied on the server; the rows keep their other labels
+    public void addLabels(List<Long> mailIds, List<String> labelIds) {
+        diskIO.execute(() -> {
+            List<Mail> mails = mailDao.getMailsByIds(mailIds);
+            for (Mail mail : mails) {
+                Set<String> merged = new LinkedHashSet<>();
+                if (mail.getLabelIds() != null) merged.addAll(mail.getLabelIds());
+                merged.addAll(labelIds);
+                mail.setLabelIds(new ArrayList<>(merged));
+            }
+            mailDao.upsertMails(mails);
+        });
+    }
+
+    // The mail left the folder for one the response does not name (restore, unspam):
+    // read back just that mail, whose view says where the server put it. Until then
+    // the row stays where moveBack guessed; a failed read-back is retried with backoff.
+    public void applyLeftFolder(String bearerToken, String serverId) {
+        readBack(bearerToken, serverId, 1);
+    }
+
+    private void readBack(String bearerToken, String serverId, int attempt) {
+        apiService.getMailById(bearerToken, serverId, true).enqueue(new Callback<Mail>() {
+            @Override
+            public void onResponse(Call<Mail> call, Response<Mail> response) {
+                Mail mail = response.body();
+                if (!response.isSuccessful() || mail == null) {
+                    // A 4xx will not change; the next sync catches up
+                    if (response.code() >= 500) retryReadBack(bearerToken, serverId, attempt);
+                    return;
+                }
+                diskIO.execute(() -> {
+                    mail.convertIdFromString();
+                    List<Mail> written = new ArrayList<>();
+                    db.runInTransaction(() -> written.addAll(upsertViews(Arrays.asList(mail))));
+                    indexMails(written);
+                });
+            }
+
+            @Override
+            public void onFailure(Call<Mail> call, Throwable t) {
+                retryReadBack(bearerToken, serverId, attempt);
+            }
+        });
+    }
+
+    private void retryReadBack(String bearerToken, String serverId, int attempt) {
+        if (attempt >= READ_BACK_ATTEMPTS) return; // The next sync catches up
+        timer.postDelayed(() -> readBack(bearerToken, serverId, attempt + 1),
+                READ_BACK_BACKOFF_MS << (attempt - 1));
+    }
+
+    public void clearFolder(String folder) {
+        diskIO.execute(() -> db.runInTransaction(() -> {
+            mailDao.removeAllFromFolder(folder);
+            deleteFolderless();
+        }));
+    }
+
+    // Drop the cached mailbox (e.g. on logout)
+    public void clearAll() {
+        syncPrefs.edit().remove(KEY_SYNC_TOKEN).remove(KEY_LOADED_FOLDERS).apply();
+        details.evictAll();
+        timer.removeCallbacksAndMessages(null); // Read-backs of the old session
+        diskIO.execute(() -> {
+            mailDao.clearAll();
+            synchronized (textIndex) {
+                textIndex.clear();
+            }
+            ApiClient.getInstance().clearCache();
+        });
     }
 }
@@ -0,0 +1,422 @@
+package com.example.myapplication.repository;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.dao.OutboxDao;
+import com.example.myapplication.database.AppDatabase;
+import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.OutboxEntry;
+import com.example.myapplication.utils.AppExecutors;
+import com.example.myapplication.utils.AuthManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Mail mutations that survive a flaky network and an app restart. A submitted
+ * change is applied to the local store at once and recorded in the outbox table;
+ * a serial worker sends the entries in order through the batch endpoint,
+ * backing off exponentially while the server cannot be reached. An entry that
+ * undoes a queued one cancels it, and a repeated one is dropped, so re-taps cost
+ * no requests; star and read changes wait a short window for such re-taps and a
+ * single one goes out as an idempotent PUT. Requests are enqueued on OkHttp, so
+ * no pool thread waits on the network; the worker picks up again with the
+ * response. {@link #getEntries()} shows what is still waiting. A 401 stops the
+ * worker until {@link #clear()}; {@link #getSessionExpired()} reports it.
+ */
+public class Outbox {
+    // Operations of POST /api/mails/batch
+    public static final String OP_STAR = "star";
+    public static final String OP_UNSTAR = "unstar";
+    public static final String OP_READ = "read";
+    public static final String OP_TRASH = "trash";
+    public static final String OP_RESTORE = "restore";
+    public static final String OP_DELETE = "delete";
+    public static final String OP_SPAM = "spam";
+    public static final String OP_UNSPAM = "unspam";
+    public static final String OP_LABEL = "label";
+
+    private static final Map<String, String> OPPOSITES = new HashMap<>();
+    static {
+        OPPOSITES.put(OP_STAR, OP_UNSTAR);
+        OPPOSITES.put(OP_UNSTAR, OP_STAR);
+        OPPOSITES.put(OP_TRASH, OP_RESTORE);
+        OPPOSITES.put(OP_RESTORE, OP_TRASH);
+        OPPOSITES.put(OP_SPAM, OP_UNSPAM);
+        OPPOSITES.put(OP_UNSPAM, OP_SPAM);
+    }
+    // Flag changes: quick re-taps are likely, and setting a flag twice is harmless
+    private static final List<String> FLAGS = Arrays.asList(OP_STAR, OP_UNSTAR, OP_READ);
+    // Moves whose destination only the server knows
+    private static final List<String> MOVES_BACK = Arrays.asList(OP_RESTORE, OP_UNSPAM);
+
+    private static final int MAX_BATCH = 100;
+    private static final long COALESCE_WINDOW_MS = 500;
+    private static final long BASE_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private static Outbox instance;
+
+    private final AppDatabase db;
+    private final OutboxDao outboxDao;
+    private final MailRepository repository;
+    private final ApiService apiService;
+    private final AuthManager authManager;
+    private final Executor worker = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().io());
+    // Wakes the worker once a waiting entry is due; a drain with nothing due is a no-op
+    private final Handler timer = new Handler(Looper.getMainLooper());
+    private final Runnable drainWhenDue = () -> worker.execute(this::drain);
+    private final MutableLiveData<Boolean> sessionExpired = new MutableLiveData<>(false);
+    private boolean sending; // A run is on the network; worker only
+    private boolean stopped; // The token was refused, nothing goes out until clear(); worker only
+
+    private Outbox(Context context) {
+        this.db = AppDatabase.getInstance(context);
+        this.outboxDao = db.outboxDao();
+        this.repository = MailRepository.getInstance(context);
+        this.apiService = ApiClient.getInstance().getApiService();
+        this.authManager = AuthManager.getInstance(context);
+        worker.execute(() -> {
+            outboxDao.resetSending();
+            drain();
+        });
+
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity != null) {
+            connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(@NonNull Network network) {
+                    retryNow();
+                }
+            });
+        }
+    }
+
+    public static synchronized Outbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new Outbox(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Every entry not yet confirmed by the server, in send order
+    public LiveData<List<OutboxEntry>> getEntries() {
+        return outboxDao.observeAll();
+    }
+
+    // True once the server refused the token; the entries wait for the next sign-in
+    public LiveData<Boolean> getSessionExpired() {
+        return sessionExpired;
+    }
+
+    public void submit(String op, Mail mail) {
+        submit(op, Collections.singletonList(mail), null);
+    }
+
+    // Apply the change locally now and queue it for the server; labelId only for OP_LABEL
+    public void submit(String op, List<Mail> mails, String labelId) {
+        List<Long> ids = new ArrayList<>(mails.size());
+        List<OutboxEntry> entries = new ArrayList<>(mails.size());
+        for (Mail mail : mails) {
+            ids.add(mail.getId());
+            if (mail.get_id() != null) entries.add(new OutboxEntry(op, mail, labelId));
+        }
+        applyLocally(op, ids, labelId);
+        enqueue(entries);
+    }
+
+    // Label mails known only by their server ids, e.g. from a selection dialog
+    public void submitLabel(String labelId, Collection<String> serverMailIds) {
+        List<Long> ids = new ArrayList<>(serverMailIds.size());
+        List<OutboxEntry> entries = new ArrayList<>(serverMailIds.size());
+        for (String serverId : serverMailIds) {
+            long localId = Mail.localIdOf(serverId);
+            ids.add(localId);
+            entries.add(new OutboxEntry(OP_LABEL, serverId, localId, labelId));
+        }
+        applyLocally(OP_LABEL, ids, labelId);
+        enqueue(entries);
+    }
+
+    private void enqueue(List<OutboxEntry> entries) {
+        worker.execute(() -> {
+            List<String> readBack = new ArrayList<>();
+            db.runInTransaction(() -> {
+                for (OutboxEntry entry : entries) {
+                    record(entry, readBack);
+                }
+            });
+            for (String mailId : readBack) {
+                repository.applyLeftFolder(authManager.getBearerToken(), mailId);
+            }
+            drain();
+        });
+    }
+
+    // Skip the backoff, e.g. when the network comes back
+    public void retryNow() {
+        worker.execute(() -> {
+            outboxDao.clearBackoff();
+            drain();
+        });
+    }
+
+    // Forget what the server rejected; a reload from the server shows its state again
+    public void clearFailed() {
+        worker.execute(outboxDao::clearFailed);
+    }
+
+    // Drop everything, e.g. on logout
+    public void clear() {
+        worker.execute(() -> {
+            cancelScheduledDrain();
+            outboxDao.clearAll();
+            stopped = false;
+            sessionExpired.postValue(false);
+        });
+    }
+
+    private void applyLocally(String op, List<Long> ids, String labelId) {
+        switch (op) {
+            case OP_STAR:
+            case OP_UNSTAR:
+                for (long id : ids) repository.setStarred(id, OP_STAR.equals(op));
+                break;
+            case OP_READ:
+                for (long id : ids) repository.markRead(id);
+                break;
+            case OP_TRASH:
+                repository.moveToFolder(ids, "trash");
+                break;
+            case OP_SPAM:
+                repository.moveToFolder(ids, "spam");
+                break;
+            case OP_RESTORE:
+            case OP_UNSPAM:
+                // Back where the mail was moved from; the read-back after sending
+                // corrects this once the server says where it went
+                repository.moveBack(ids);
+                break;
+            case OP_DELETE:
+                repository.deleteMails(ids);
+                break;
+            case OP_LABEL:
+                repository.addLabels(ids, Collections.singletonList(labelId));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown outbox op: " + op);
+        }
+    }
+
+    // Insert the entry unless a queued one makes it redundant. On the worker, in a transaction.
+    private void record(OutboxEntry entry, List<String> readBack) {
+        String opposite = OPPOSITES.get(entry.getOp());
+        for (OutboxEntry queued : outboxDao.getPendingFor(entry.getMailId())) {
+            if (queued.getOp().equals(entry.getOp()) && Objects.equals(queued.getLabelId(), entry.getLabelId())) {
+                return; // Already on its way
+            }
+            if (queued.getOp().equals(opposite)) {
+                // Star then unstar, trash then restore: the server never needs to know
+                outboxDao.delete(Collections.singletonList(queued));
+                if (MOVES_BACK.contains(entry.getOp()) || MOVES_BACK.contains(queued.getOp())) {
+                    // The local row only guessed where the mail went back to, take the server's
+                    readBack.add(entry.getMailId());
+                }
+                return;
+            }
+        }
+        if (FLAGS.contains(entry.getOp())) {
+            // Give a toggle back the chance to cancel this before anything is sent
+            entry.setNextAttemptAt(System.currentTimeMillis() + COALESCE_WINDOW_MS);
+        }
+        outboxDao.insert(entry);
+    }
+
+    // Send the next due run; its response drains again, so the entries go out in
+    // order and one run at a time. On the worker.
+    private void drain() {
+        if (sending) return; // The response of the run on the network drains next
+        if (stopped) return; // Nothing goes out with a refused token
+        cancelScheduledDrain();
+        List<OutboxEntry> head = outboxDao.getHead(MAX_BATCH);
+        if (head.isEmpty()) return;
+        OutboxEntry first = head.get(0);
+        long wait = first.getNextAttemptAt() - System.currentTimeMillis();
+        if (wait > 0) {
+            scheduleDrain(wait);
+            return;
+        }
+
+        // Adjacent entries with the same operation go out as one batch
+        List<OutboxEntry> run = new ArrayList<>();
+        for (OutboxEntry entry : head) {
+            if (!entry.getOp().equals(first.getOp()) || !Objects.equals(entry.getLabelId(), first.getLabelId())) break;
+            entry.setState(OutboxEntry.STATE_SENDING);
+            run.add(entry);
+        }
+        outboxDao.update(run);
+        send(run);
+    }
+
+    private void send(List<OutboxEntry> run) {
+        String token = authManager.getBearerToken();
+        OutboxEntry first = run.get(0);
+        if (run.size() == 1 && FLAGS.contains(first.getOp())) {
+            // One flag change, sent as a PUT of the wanted state
+            Call<Void> call = OP_READ.equals(first.getOp())
+                    ? apiService.setRead(token, first.getMailId(), new ApiService.ReadRequest(true))
+                    : apiService.setStarred(token, first.getMailId(), new ApiService.StarredRequest(OP_STAR.equals(first.getOp())));
+            sendAsync(call, run, response -> onFlagResponse(run, response));
+            return;
+        }
+        List<String> ids = new ArrayList<>(run.size());
+        for (OutboxEntry entry : run) {
+            ids.add(entry.getMailId());
+        }
+        ApiService.BatchRequest request = new ApiService.BatchRequest(ids, first.getOp(), first.getLabelId());
+        sendAsync(apiService.batchMutate(token, request), run, response -> onBatchResponse(run, token, response));
+    }
+
+    private interface ResponseHandler<T> {
+        // On the worker; returns false when the run has to wait for a retry
+        boolean handle(Response<T> response);
+    }
+
+    // Send without holding a thread; the response is handled back on the worker
+    private <T> void sendAsync(Call<T> call, List<OutboxEntry> run, ResponseHandler<T> handler) {
+        sending = true;
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> c, Response<T> response) {
+                worker.execute(() -> {
+                    sending = false;
+                    if (handler.handle(response)) drain();
+                });
+            }
+
+            @Override
+            public void onFailure(Call<T> c, Throwable t) {
+                worker.execute(() -> {
+                    sending = false;
+                    backOff(run, "Network error: " + t.getMessage());
+                });
+            }
+        });
+    }
+
+    private boolean onBatchResponse(List<OutboxEntry> run, String token, Response<ApiService.BatchResponse> response) {
+        OutboxEntry first = run.get(0);
+        ApiService.BatchResponse body = response.body();
+        if (response.isSuccessful() && body != null && body.getResults() != null) {
+            Map<String, ApiService.BatchResult> results = new HashMap<>();
+            for (ApiService.BatchResult result : body.getResults()) {
+                if (result != null) results.put(result.getId(), result);
+            }
+            List<OutboxEntry> done = new ArrayList<>();
+            List<OutboxEntry> failed = new ArrayList<>();
+            List<OutboxEntry> unanswered = new ArrayList<>();
+            for (OutboxEntry entry : run) {
+                ApiService.BatchResult result = results.get(entry.getMailId());
+                if (result == null) {
+                    // Not known to have happened, so send it again
+                    unanswered.add(entry);
+                } else if (result.isOk()) {
+                    done.add(entry);
+                } else {
+                    entry.setState(OutboxEntry.STATE_FAILED);
+                    entry.setError(result.getError());
+                    failed.add(entry);
+                }
+            }
+            outboxDao.delete(done);
+            outboxDao.update(failed);
+            if (!unanswered.isEmpty()) {
+                backOff(unanswered, "No result from the server");
+            }
+            if (MOVES_BACK.contains(first.getOp())) {
+                for (OutboxEntry entry : done) {
+                    repository.applyLeftFolder(token, entry.getMailId());
+                }
+            }
+            return true;
+        }
+
+        return onRejected(run, response.code());
+    }
+
+    private boolean onFlagResponse(List<OutboxEntry> run, Response<Void> response) {
+        if (response.isSuccessful()) {
+            outboxDao.delete(run);
+            return true;
+        }
+        return onRejected(run, response.code());
+    }
+
+    private boolean onRejected(List<OutboxEntry> run, int code) {
+        if (code == 401) {
+            // Retrying cannot help until the user signs in again; keep the run for then
+            for (OutboxEntry entry : run) {
+                entry.setState(OutboxEntry.STATE_PENDING);
+            }
+            outboxDao.update(run);
+            stopped = true;
+            cancelScheduledDrain();
+            sessionExpired.postValue(true);
+            return false;
+        }
+        if (code >= 500 || code == 408 || code == 429) {
+            backOff(run, "Server error (" + code + ")");
+            return false;
+        }
+        // The server will not take this request however often it is sent
+        for (OutboxEntry entry : run) {
+            entry.setState(OutboxEntry.STATE_FAILED);
+            entry.setError("Rejected by the server (" + code + ")");
+        }
+        outboxDao.update(run);
+        return true;
+    }
+
+    private void backOff(List<OutboxEntry> run, String error) {
+        int attempts = run.get(0).getAttempts() + 1;
+        long delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempts - 1, 20));
+        for (OutboxEntry entry : run) {
+            entry.setState(OutboxEntry.STATE_PENDING);
+            entry.setAttempts(attempts);
+            entry.setNextAttemptAt(System.currentTimeMillis() + delay);
+            entry.setError(error);
+        }
+        outboxDao.update(run);
+        scheduleDrain(delay);
+    }
+
+    private void scheduleDrain(long delayMs) {
+        cancelScheduledDrain();
+        timer.postDelayed(drainWhenDue, delayMs);
+    }
+
+    private void cancelScheduledDrain() {
+        timer.removeCallbacks(drainWhenDue);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myapplication.repository;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import com.example.myapplication.MailFolder;
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.api.UserRequestTracker;
+import com.example.myapplication.models.Mail;
+import com.example.myapplication.utils.AppExecutors;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+
+/**
+ * Warms the cache while the user is reading: the first page of the folders most
+ * likely opened next goes into Room, the top unread mails of the folder on screen
+ * into the repository's detail cache. One request at a time, started only when the
+ * main thread is idle, no user request is in flight and the network is unmetered.
+ * Any user request cancels the rest at once. Main thread only, apart from
+ * {@link #onUserRequest()}.
+ */
+public class PrefetchScheduler implements UserRequestTracker.Listener {
+    // Folders in the order users usually open them after the one on screen
+    private static final List<MailFolder> LIKELY_NEXT =
+            Arrays.asList(MailFolder.INBOX, MailFolder.SENT, MailFolder.STARRED, MailFolder.DRAFTS);
+    private static final int UNREAD_DETAILS = 5;
+
+    private interface Task {
+        Call<?> start(Runnable done);
+    }
+
+    private final MailRepository repository;
+    private final ConnectivityManager connectivity;
+    private final UserRequestTracker userRequests;
+    private final Executor mainThread = AppExecutors.getInstance().main();
+    private final Queue<Task> tasks = new ArrayDeque<>();
+    // Folders whose first page was fetched this session
+    private final Set<MailFolder> warmed = EnumSet.noneOf(MailFolder.class);
+    private final MessageQueue.IdleHandler idleHandler = this::onIdle;
+    private boolean waitingForIdle;
+    private volatile Call<?> running;
+
+    public PrefetchScheduler(Context context, MailRepository repository) {
+        this.repository = repository;
+        this.connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.userRequests = ApiClient.getInstance().getUserRequests();
+        userRequests.addListener(this);
+    }
+
+    /**
+     * Plan the prefetch for the folder now on screen, replacing any earlier plan.
+     * Call after the folder loaded; nothing is sent until the app goes idle.
+     */
+    public void schedule(String bearerToken, MailFolder current, List<Mail> shown) {
+        cancel();
+        warmed.add(current);
+        int unread = 0;
+        for (Mail mail : shown) {
+            if (unread == UNREAD_DETAILS) break;
+            String serverId = mail.get_id();
+            if (mail.isRead() || "draft".equals(mail.getStatus()) || serverId == null
+                    || repository.getCachedDetail(serverId) != null) {
+                continue;
+            }
+            tasks.add(done -> repository.prefetchMail(bearerToken, serverId, done));
+            unread++;
+        }
+        for (MailFolder folder : LIKELY_NEXT) {
+            if (warmed.contains(folder)) continue;
+            tasks.add(done -> repository.prefetchPage(bearerToken, folder, new MailRepository.PageCallback() {
+                @Override
+                public void onPageLoaded(String nextCursor) {
+                    warmed.add(folder);
+                    done.run();
+                }
+
+                @Override
+                public void onError(String message) {
+                    done.run();
+                }
+            }));
+        }
+        waitForIdle();
+    }
+
+    // Drop the plan and the request in flight
+    public void cancel() {
+        tasks.clear();
+        if (waitingForIdle) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            waitingForIdle = false;
+        }
+        Call<?> call = running;
+        running = null;
+        if (call != null) call.cancel();
+    }
+
+    // Forget what was warmed, e.g. on logout
+    public void reset() {
+        cancel();
+        warmed.clear();
+    }
+
+    public void shutdown() {
+        cancel();
+        userRequests.removeListener(this);
+    }
+
+    // The user needs the network: stop now, the next schedule() plans afresh
+    @Override
+    public void onUserRequest() {
+        Call<?> call = running;
+        if (call != null) call.cancel();
+        mainThread.execute(this::cancel);
+    }
+
+    private void waitForIdle() {
+        if (waitingForIdle || tasks.isEmpty()) return;
+        waitingForIdle = true;
+        Looper.myQueue().addIdleHandler(idleHandler);
+    }
+
+    // Returns whether to stay registered; re-checked every time the queue drains
+    private boolean onIdle() {
+        if (userRequests.isBusy() || !isUnmetered()) return true;
+        waitingForIdle = false;
+        Task task = tasks.poll();
+        if (task == null) return false;
+        Call<?>[] call = new Call<?>[1];
+        call[0] = task.start(() -> {
+            // A cancelled call still reports back; only the current one moves on
+            if (running != call[0]) return;
+            running = null;
+            waitForIdle();
+        });
+        running = call[0];
+        return false;
+    }
+
+    private boolean isUnmetered() {
+        return connectivity != null
+                && connectivity.getActiveNetwork() != null
+                && !connectivity.isActiveNetworkMetered();
+    }
+}
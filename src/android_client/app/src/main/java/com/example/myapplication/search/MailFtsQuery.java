@@ -0,0 +1,85 @@
+package com.example.myapplication.search;
+
+import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.MailMatch;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns typed text into an FTS4 MATCH expression and ranks the matches.
+ */
+public final class MailFtsQuery {
+    // Per mail_fts column: subject, from, fromName, to, bodyPreview
+    private static final double[] COLUMN_WEIGHTS = {4.0, 2.0, 2.0, 1.0, 1.0};
+
+    private MailFtsQuery() {}
+
+    /**
+     * Every word of the input becomes a prefix term, all of which must match,
+     * e.g. "dan rep" becomes "dan* rep*". Returns null when nothing searchable is left.
+     */
+    public static String toMatch(String input) {
+        StringBuilder match = new StringBuilder();
+        int i = 0;
+        int length = input.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(input.charAt(i))) i++;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(input.charAt(i))) i++;
+            if (i > start) {
+                if (match.length() > 0) match.append(' ');
+                // Quoted so words like "and" or "near" are not read as operators
+                match.append('"').append(input.substring(start, i).toLowerCase(Locale.ROOT)).append("\"*");
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Orders matches by column-weighted hit frequency. The sort is stable, so equally
+     * ranked mails stay newest first as the query returned them.
+     */
+    public static List<Mail> rank(List<MailMatch> matches) {
+        double[] scores = new double[matches.size()];
+        List<Integer> order = new ArrayList<>(matches.size());
+        for (int i = 0; i < matches.size(); i++) {
+            scores[i] = score(matches.get(i).matchInfo);
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<Mail> ranked = new ArrayList<>(matches.size());
+        for (int index : order) {
+            ranked.add(matches.get(index).mail);
+        }
+        return ranked;
+    }
+
+    // matchinfo 'pcx': phrase count, column count, then per phrase and column
+    // (hits in this row, hits in all rows, rows with a hit)
+    static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 8) return 0;
+        ByteBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = info.getInt(0);
+        int columns = info.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int offset = 8 + 12 * (phrase * columns + column);
+                if (offset + 8 > matchInfo.length) return score;
+                int hitsInRow = info.getInt(offset);
+                int hitsInAllRows = info.getInt(offset + 4);
+                if (hitsInRow > 0 && hitsInAllRows > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.myapplication.search;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.api.ResponseProcessor;
+import com.example.myapplication.labels.LabelIndex;
+import com.example.myapplication.models.Mail;
+import com.example.myapplication.repository.MailRepository;
+import com.example.myapplication.utils.AppExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Filters mails by label and search text off the main thread.
+ * Without text the loaded folder is filtered; with text every cached mail is
+ * searched through the repository indexes, whatever folder is open, and the server
+ * is asked in parallel for pages of hits the device does not have.
+ * Keystrokes are debounced, and a newer query cancels the one still running,
+ * including its network call. The index lookups run on the IO pool, the label
+ * filtering on one compute lane, so a burst of queries never takes every
+ * compute thread.
+ */
+public class MailSearch {
+    public static final long DEBOUNCE_MS = 250;
+    // How many mails to match between two cancellation checks
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+
+    public interface Callback {
+        // Called with the local results, then again each time server hits are merged in
+        void onResults(List<Mail> results);
+    }
+
+    private final MailRepository repository;
+    private final ApiService apiService;
+    private final Supplier<String> bearerToken;
+    // A superseded query notices its generation and stops, so the next one soon gets the lane
+    private final Executor executor = AppExecutors.getInstance().newSerialExecutor(AppExecutors.getInstance().compute());
+    private final Executor diskIO = AppExecutors.getInstance().io(); // searchCached reads Room
+    private final Executor mainThread = AppExecutors.getInstance().main();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper()); // Debounce timer
+    private final AtomicInteger generation = new AtomicInteger();
+    private Runnable pending;
+
+    // State of the current query, main thread only
+    private Callback callback;
+    private String remoteQuery;
+    private LabelIndex.Filter remoteLabelFilter;
+    private Call<ApiService.SearchResponse> remoteCall;
+    private String remoteCursor;
+    private boolean remoteDone;
+    private List<Mail> localResults;
+    private final List<Mail> remoteResults = new ArrayList<>();
+
+    public MailSearch(MailRepository repository, ApiService apiService, Supplier<String> bearerToken) {
+        this.repository = repository;
+        this.apiService = apiService;
+        this.bearerToken = bearerToken;
+    }
+
+    // Must be called on the main thread; callback runs there with the latest results only
+    // labelFilter is null when no label is selected
+    public void filter(List<Mail> mails, LabelIndex.Filter labelFilter, String query, boolean debounce, Callback callback) {
+        int requestGeneration = generation.incrementAndGet();
+        cancelPending();
+        resetQuery(callback);
+
+        List<Mail> snapshot = new ArrayList<>(mails);
+        String needle = query.trim();
+        pending = () -> {
+            pending = null;
+            if (needle.isEmpty()) {
+                executor.execute(() -> matchAndPublish(snapshot, labelFilter, requestGeneration));
+            } else {
+                // The indexes do the text matching, only the label filter is left
+                diskIO.execute(() -> {
+                    if (requestGeneration != generation.get()) return; // superseded
+                    List<Mail> cached = repository.searchCached(needle);
+                    executor.execute(() -> matchAndPublish(cached, labelFilter, requestGeneration));
+                });
+                // The server is asked next to the local search, not after it
+                remoteQuery = needle;
+                remoteLabelFilter = labelFilter;
+                loadMore();
+            }
+        };
+
+        if (debounce) {
+            mainHandler.postDelayed(pending, DEBOUNCE_MS);
+        } else {
+            pending.run();
+        }
+    }
+
+    /**
+     * Requests the next server page of the current text query, unless the last
+     * page was reached or one is in flight. Call as the user nears the end of the results.
+     */
+    public void loadMore() {
+        if (remoteQuery == null || remoteDone || remoteCall != null) return;
+        int requestGeneration = generation.get();
+        remoteCall = apiService.searchMails(bearerToken.get(), remoteQuery,
+                null, null, null, null, remoteCursor, MailRepository.PAGE_SIZE);
+        remoteCall.enqueue(new retrofit2.Callback<ApiService.SearchResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.SearchResponse> call, Response<ApiService.SearchResponse> response) {
+                if (call.isCanceled() || requestGeneration != generation.get()) return;
+                if (!response.isSuccessful() || response.body() == null || response.body().getResults() == null) {
+                    remoteCall = null;
+                    remoteDone = true; // The local results are already shown
+                    return;
+                }
+                // remoteCall stays set until the hits are merged, so loadMore waits for them
+                ApiService.SearchResponse body = response.body();
+                LabelIndex.Filter labelFilter = remoteLabelFilter;
+                ResponseProcessor.getInstance().process("search", body, page -> {
+                    List<Mail> hits = new ArrayList<>(page.getResults().size());
+                    for (Mail mail : page.getResults()) {
+                        mail.convertIdFromString();
+                        if (labelFilter == null || labelFilter.contains(mail.getId())) {
+                            hits.add(mail);
+                        }
+                    }
+                    return Collections.unmodifiableList(hits);
+                }, hits -> {
+                    if (call != remoteCall || requestGeneration != generation.get()) return; // superseded
+                    remoteCall = null;
+                    remoteCursor = body.getNextCursor();
+                    remoteDone = remoteCursor == null;
+                    remoteResults.addAll(hits);
+                    publish();
+                }, error -> {
+                    if (call != remoteCall || requestGeneration != generation.get()) return;
+                    remoteCall = null;
+                    remoteDone = true; // As for a failed response
+                });
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.SearchResponse> call, Throwable t) {
+                if (call.isCanceled() || requestGeneration != generation.get()) return;
+                // Offline: the local results stand on their own
+                remoteCall = null;
+                remoteDone = true;
+            }
+        });
+    }
+
+    // Drop the queued and running queries; call when the screen goes away
+    public void shutdown() {
+        generation.incrementAndGet();
+        cancelPending();
+        resetQuery(null);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            mainHandler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+
+    private void resetQuery(Callback callback) {
+        if (remoteCall != null) {
+            remoteCall.cancel();
+            remoteCall = null;
+        }
+        this.callback = callback;
+        remoteQuery = null;
+        remoteLabelFilter = null;
+        remoteCursor = null;
+        remoteDone = false;
+        localResults = null;
+        remoteResults.clear();
+    }
+
+    // Local hits keep their ranked order on top; server hits the device did not
+    // have follow in arrival order, so a merge never moves rows already shown
+    private void publish() {
+        List<Mail> merged = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        if (localResults != null) {
+            for (Mail mail : localResults) {
+                if (ids.add(mail.getId())) merged.add(mail);
+            }
+        }
+        for (Mail mail : remoteResults) {
+            if (ids.add(mail.getId())) merged.add(mail);
+        }
+        callback.onResults(merged);
+    }
+
+    // On the compute lane
+    private void matchAndPublish(List<Mail> mails, LabelIndex.Filter labelFilter, int requestGeneration) {
+        List<Mail> results = match(mails, labelFilter, requestGeneration);
+        if (results == null) return; // superseded
+        mainThread.execute(() -> {
+            if (requestGeneration == generation.get()) {
+                localResults = results;
+                publish();
+            }
+        });
+    }
+
+    private List<Mail> match(List<Mail> mails, LabelIndex.Filter labelFilter, int requestGeneration) {
+        List<Mail> results = new ArrayList<>();
+        for (int i = 0; i < mails.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && requestGeneration != generation.get()) {
+                return null;
+            }
+            Mail mail = mails.get(i);
+            if (labelFilter == null || labelFilter.contains(mail.getId())) {
+                results.add(mail);
+            }
+        }
+        return results;
+    }
+}
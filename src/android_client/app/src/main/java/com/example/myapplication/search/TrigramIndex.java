@@ -0,0 +1,247 @@
+package com.example.myapplication.search;
+
+import com.example.myapplication.models.Mail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Case-insensitive substring index over the searchable text of mails.
+ * Every three-character window of from, fromName, subject, bodyPreview and to
+ * points at a sorted int[] of the documents containing it. A query intersects the
+ * postings of its own trigrams and only the few documents left are verified with
+ * indexOf, so a keystroke costs about the number of matches rather than the
+ * length of every cached mail.
+ *
+ * Matches exactly what String.regionMatches(true, ...) matches per field. Thread safe.
+ */
+public class TrigramIndex {
+    // Fields are joined with a character no query contains, so a match never spans two fields
+    private static final char FIELD_SEPARATOR = '\0';
+    private static final int INITIAL_CAPACITY = 1024;
+    // Compact once this many deleted documents are still referenced by the postings
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    // Documents, numbered in insertion order so every posting list stays sorted
+    private String[] texts = new String[INITIAL_CAPACITY]; // folded text, null once deleted
+    private long[] mailIds = new long[INITIAL_CAPACITY];
+    private int docCount;
+    private int deletedCount;
+    private final Map<Long, Integer> docByMailId = new HashMap<>();
+
+    // Open-addressing map from packed trigram to its posting list; key 0 marks a free slot
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[][] postings = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    private int trigramCount;
+
+    // Add a mail or replace the text indexed for it
+    public synchronized void add(Mail mail) {
+        removeDoc(mail.getId());
+        compactIfSparse();
+        String text = fold(mail.getFrom()) + FIELD_SEPARATOR
+                + fold(mail.getFromName()) + FIELD_SEPARATOR
+                + fold(mail.getSubject()) + FIELD_SEPARATOR
+                + fold(mail.getBodyPreview()) + FIELD_SEPARATOR
+                + fold(mail.getTo());
+        addDoc(mail.getId(), text);
+    }
+
+    public synchronized void remove(long mailId) {
+        removeDoc(mailId);
+        compactIfSparse();
+    }
+
+    public synchronized void clear() {
+        texts = new String[INITIAL_CAPACITY];
+        mailIds = new long[INITIAL_CAPACITY];
+        docCount = 0;
+        deletedCount = 0;
+        docByMailId.clear();
+        keys = new long[INITIAL_CAPACITY];
+        postings = new int[INITIAL_CAPACITY][];
+        postingSizes = new int[INITIAL_CAPACITY];
+        trigramCount = 0;
+    }
+
+    /**
+     * Ids of the mails containing the query in any field, ignoring case, at most
+     * limit of them and newest first (local ids grow with the ObjectId timestamp).
+     */
+    public synchronized long[] search(String query, int limit) {
+        String needle = fold(query);
+        if (needle.isEmpty()) return new long[0];
+
+        long[] hits = new long[Math.min(limit, 64)];
+        int hitCount = 0;
+        int[] candidates = candidates(needle);
+        int candidateCount = candidates == null ? docCount : candidates.length;
+        // Newest documents first, so the limit keeps the most recent hits
+        for (int i = candidateCount - 1; i >= 0; i--) {
+            int doc = candidates == null ? i : candidates[i];
+            String text = texts[doc];
+            if (text == null || text.indexOf(needle) < 0) continue;
+            if (hitCount == hits.length) hits = Arrays.copyOf(hits, hitCount * 2);
+            hits[hitCount++] = mailIds[doc];
+        }
+        Arrays.sort(hits, 0, hitCount);
+
+        int resultCount = Math.min(limit, hitCount);
+        long[] result = new long[resultCount];
+        for (int i = 0; i < resultCount; i++) {
+            result[i] = hits[hitCount - 1 - i];
+        }
+        return result;
+    }
+
+    // Documents holding every trigram of the needle, or null when it is too short to have one
+    private int[] candidates(String needle) {
+        int trigrams = needle.length() - 2;
+        if (trigrams <= 0) return null;
+
+        int[] slots = new int[trigrams];
+        for (int i = 0; i < trigrams; i++) {
+            int slot = find(pack(needle, i));
+            if (slot < 0) return new int[0];
+            slots[i] = slot;
+        }
+        // Start from the rarest trigram, each intersection can only shrink the set
+        int rarest = 0;
+        for (int i = 1; i < trigrams; i++) {
+            if (postingSizes[slots[i]] < postingSizes[slots[rarest]]) rarest = i;
+        }
+        int size = postingSizes[slots[rarest]];
+        int[] result = Arrays.copyOf(postings[slots[rarest]], size);
+        for (int i = 0; i < trigrams && size > 0; i++) {
+            if (i != rarest) {
+                size = intersect(result, size, postings[slots[i]], postingSizes[slots[i]]);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Keeps in a[0..aSize) the values also in b[0..bSize); both sorted. Returns the new size.
+    private static int intersect(int[] a, int aSize, int[] b, int bSize) {
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < aSize && j < bSize; i++) {
+            int value = a[i];
+            while (j < bSize && b[j] < value) j++;
+            if (j < bSize && b[j] == value) a[size++] = value;
+        }
+        return size;
+    }
+
+    private void addDoc(long mailId, String text) {
+        if (docCount == texts.length) {
+            texts = Arrays.copyOf(texts, docCount * 2);
+            mailIds = Arrays.copyOf(mailIds, docCount * 2);
+        }
+        int doc = docCount++;
+        texts[doc] = text;
+        mailIds[doc] = mailId;
+        docByMailId.put(mailId, doc);
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            if (text.charAt(i) == FIELD_SEPARATOR || text.charAt(i + 1) == FIELD_SEPARATOR
+                    || text.charAt(i + 2) == FIELD_SEPARATOR) {
+                continue;
+            }
+            int slot = findOrInsert(pack(text, i));
+            int size = postingSizes[slot];
+            int[] list = postings[slot];
+            // doc is the highest id so far, a repeat of the trigram in this text is the last entry
+            if (size > 0 && list[size - 1] == doc) continue;
+            if (list == null) {
+                list = postings[slot] = new int[2];
+            } else if (size == list.length) {
+                list = postings[slot] = Arrays.copyOf(list, size * 2);
+            }
+            list[size] = doc;
+            postingSizes[slot] = size + 1;
+        }
+    }
+
+    // Deleted documents stay in the postings and are skipped until the next compaction
+    private void removeDoc(long mailId) {
+        Integer doc = docByMailId.remove(mailId);
+        if (doc == null) return;
+        texts[doc] = null;
+        deletedCount++;
+    }
+
+    // Renumber the live documents and rebuild the postings once most of them are deleted
+    private void compactIfSparse() {
+        if (deletedCount < COMPACT_MIN_DELETED || deletedCount <= docCount - deletedCount) return;
+        String[] oldTexts = texts;
+        long[] oldMailIds = mailIds;
+        int oldCount = docCount;
+        clear();
+        for (int doc = 0; doc < oldCount; doc++) {
+            if (oldTexts[doc] != null) {
+                addDoc(oldMailIds[doc], oldTexts[doc]);
+            }
+        }
+    }
+
+    // Three UTF-16 chars packed into one non-zero long
+    private static long pack(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    // regionMatches(true, ...) treats two chars as equal exactly when this folds them alike
+    private static String fold(String text) {
+        if (text == null) return "";
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        return new String(chars);
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    private int findOrInsert(long key) {
+        if ((trigramCount + 1) * 2 > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        trigramCount++;
+        return slot;
+    }
+
+    // Double the table, keeping the load factor under one half
+    private void grow() {
+        long[] oldKeys = keys;
+        int[][] oldPostings = postings;
+        int[] oldSizes = postingSizes;
+        keys = new long[oldKeys.length * 2];
+        postings = new int[keys.length][];
+        postingSizes = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            postings[slot] = oldPostings[i];
+            postingSizes[slot] = oldSizes[i];
+        }
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.myapplication.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The app's threads. Blocking work (Room, files, synchronous requests) goes to
+ * {@link #io()}, CPU work (matching, diffing, preparing responses, images) to
+ * {@link #compute()}, and results go back through {@link #main()}. Both pools have a
+ * fixed size; components that need their tasks in order take a
+ * {@link #newSerialExecutor serial executor} on top of one instead of a thread of
+ * their own. Every executor reports queue depth, wait time and run time under
+ * the "Executors" log tag.
+ */
+public class AppExecutors {
+    // Room runs one write at a time; the rest of the threads serve reads and files
+    private static final int IO_THREADS = 4;
+    private static final int COMPUTE_THREADS =
+            Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+
+    private static AppExecutors instance;
+
+    private final MeteredExecutor io = new MeteredExecutor("io", IO_THREADS);
+    private final MeteredExecutor compute = new MeteredExecutor("compute", COMPUTE_THREADS);
+    private final MainThreadExecutor main = new MainThreadExecutor();
+
+    private AppExecutors() {
+    }
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    public MeteredExecutor io() {
+        return io;
+    }
+
+    public MeteredExecutor compute() {
+        return compute;
+    }
+
+    public Executor main() {
+        return main;
+    }
+
+    // Runs its tasks one at a time, in the order they were handed in, on the given pool
+    public Executor newSerialExecutor(MeteredExecutor pool) {
+        return new SerialExecutor(pool);
+    }
+
+    public List<ExecutorStats> getStats() {
+        return Arrays.asList(io.getStats(), compute.getStats(), main.stats);
+    }
+
+    private static final class SerialExecutor implements Executor {
+        private final MeteredExecutor pool;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>(); // Guarded by this
+        private boolean running; // Guarded by this
+
+        SerialExecutor(MeteredExecutor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            // Timed from here, so waiting behind earlier tasks shows up as wait time
+            Runnable measured = pool.getStats().measure(task);
+            tasks.add(() -> {
+                try {
+                    measured.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            if (!running) scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            Runnable next = tasks.poll();
+            running = next != null;
+            if (running) pool.executeMeasured(next);
+        }
+    }
+
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final ExecutorStats stats = new ExecutorStats("main");
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            handler.post(stats.measure(task));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.myapplication.utils;
+
+import android.os.Debug;
+import android.util.Log;
+
+/**
+ * Measures objects allocated per RecyclerView bind, as the change of the process-wide
+ * allocation count across the bind. Other threads allocating meanwhile are counted
+ * too, so the figure is an upper bound. Off by default; enabling it starts the
+ * runtime's allocation counting.
+ */
+public class BindAllocationTracker {
+    private static final String TAG = "BindAllocations";
+    private static final int REPORT_EVERY = 100; // binds
+
+    private final String name;
+    private boolean enabled;
+    private int startCount;
+    private long binds;
+    private long allocations;
+
+    public BindAllocationTracker(String name) {
+        this.name = name;
+    }
+
+    // Allocation counting slows every allocation of the process, so it only runs while enabled
+    @SuppressWarnings("deprecation")
+    public void setEnabled(boolean enabled) {
+        if (enabled == this.enabled) return;
+        this.enabled = enabled;
+        if (enabled) {
+            Debug.startAllocCounting();
+        } else {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    public void beginBind() {
+        if (!enabled) return;
+        startCount = Debug.getGlobalAllocCount();
+    }
+
+    public void endBind() {
+        if (!enabled) return;
+        allocations += Debug.getGlobalAllocCount() - startCount;
+        binds++;
+        if (binds % REPORT_EVERY == 0) {
+            Log.d(TAG, name + ": " + binds + " binds, " + getAllocationsPerBind() + " allocations per bind");
+        }
+    }
+
+    public double getAllocationsPerBind() {
+        return binds == 0 ? 0 : (double) allocations / binds;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.myapplication.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue depth, wait time and run time of the tasks of one executor. A task is
+ * counted as queued from the moment it is handed in until a thread picks it up,
+ * so the time spent behind a serial executor counts as waiting too.
+ */
+public class ExecutorStats {
+    private static final String TAG = "Executors";
+    private static final int REPORT_EVERY = 500; // tasks
+    // A task that waited this long for a thread means the executor is starved
+    private static final long STARVED_WAIT_MS = 100;
+    private static final long STARVED_REPORT_INTERVAL_MS = 1000;
+
+    private final String name;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+    private final AtomicLong lastStarvedReport = new AtomicLong();
+
+    public ExecutorStats(String name) {
+        this.name = name;
+    }
+
+    // The task, timed from now; hand the result to the executor instead of the task
+    Runnable measure(Runnable task) {
+        int depth = queued.incrementAndGet();
+        maxQueued.accumulateAndGet(depth, Math::max);
+        long queuedAt = SystemClock.elapsedRealtimeNanos();
+        return () -> {
+            long start = SystemClock.elapsedRealtimeNanos();
+            queued.decrementAndGet();
+            try {
+                task.run();
+            } finally {
+                record(start - queuedAt, SystemClock.elapsedRealtimeNanos() - start);
+            }
+        };
+    }
+
+    private void record(long waitNanos, long runNanos) {
+        long count = tasks.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        totalRunNanos.addAndGet(runNanos);
+        maxRunNanos.accumulateAndGet(runNanos, Math::max);
+
+        long waitMs = waitNanos / 1_000_000;
+        if (waitMs >= STARVED_WAIT_MS) {
+            long now = SystemClock.elapsedRealtime();
+            long last = lastStarvedReport.get();
+            if (now - last >= STARVED_REPORT_INTERVAL_MS && lastStarvedReport.compareAndSet(last, now)) {
+                Log.w(TAG, name + ": task waited " + waitMs + " ms for a thread, " + queued.get() + " still queued");
+            }
+        }
+        if (count % REPORT_EVERY == 0) {
+            Log.d(TAG, toString());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Tasks handed in and not started yet
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    public long getTaskCount() {
+        return tasks.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = tasks.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    public double getAverageRunMillis() {
+        long count = tasks.get();
+        return count == 0 ? 0 : totalRunNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxRunMillis() {
+        return maxRunNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s: %d tasks, queue %d (max %d), wait avg %.1f ms (max %.1f), run avg %.1f ms (max %.1f)",
+                name, getTaskCount(), getQueueDepth(), getMaxQueueDepth(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getAverageRunMillis(), getMaxRunMillis());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.myapplication.utils;
+
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of background threads, with every task measured by
+ * {@link ExecutorStats}. Idle threads exit after a while and come back on demand;
+ * tasks beyond the thread count wait in the queue instead of starting threads.
+ */
+public class MeteredExecutor extends ThreadPoolExecutor {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ExecutorStats stats;
+
+    public MeteredExecutor(String name, int threads) {
+        super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory(name));
+        allowCoreThreadTimeOut(true);
+        this.stats = new ExecutorStats(name);
+    }
+
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(stats.measure(command));
+    }
+
+    // For tasks already measured, e.g. by a serial executor on top of this one
+    void executeMeasured(Runnable measured) {
+        super.execute(measured);
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            // Keep the UI thread ahead of background work
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+}
@@ -100,29 +100,39 @@ public class PhotoHandler {
                 (Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
         activity.startActivityForResult(gallery, GALLERY_PERM);
     }
-    public Bitmap onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        if (resultCode == RESULT_OK) {
-            Uri photoHolderUri = null;
-            if (requestCode == CAMERA_REQUEST && data != null && data.getExtras() != null) {
-                Bitmap photoHolderBitmap = (Bitmap) data.getExtras().get("data");
-                if (photoHolderBitmap != null) {
-                    photoHolderUri = bitmapToUri(photoHolderBitmap, activity);
-                    imageView.setImageURI(photoHolderUri);
-                    this.uri = photoHolderUri;
-                }
-            }
-            if (requestCode == GALLERY_PERM && data != null) {
-                photoHolderUri = data.getData();
-                if (photoHolderUri != null) {
-                    imageView.setImageURI(photoHolderUri);
-                    this.uri = photoHolderUri;
-                }
-            }
-            if (photoHolderUri != null) {
-                return getBitmapFromUri(photoHolderUri, activity);
+    public interface OnPhotoListener {
+        // On the main thread, once the photo is decoded and shown
+        void onPhoto(Uri uri);
+    }
+
+    // Saving and decoding the photo run on the shared executors, not the main thread
+    public void onActivityResult(int requestCode, int resultCode, @Nullable Intent data, OnPhotoListener listener) {
+        if (resultCode != RESULT_OK || data == null) return;
+        if (requestCode == CAMERA_REQUEST && data.getExtras() != null) {
+            Bitmap photoHolderBitmap = (Bitmap) data.getExtras().get("data");
+            if (photoHolderBitmap != null) {
+                AppExecutors.getInstance().io().execute(() -> {
+                    Uri photoHolderUri = bitmapToUri(photoHolderBitmap, activity);
+                    AppExecutors.getInstance().main().execute(() -> showPhoto(photoHolderUri, listener));
+                });
             }
         }
-        return null;
+        if (requestCode == GALLERY_PERM) {
+            showPhoto(data.getData(), listener);
+        }
+    }
+
+    private void showPhoto(Uri photoHolderUri, OnPhotoListener listener) {
+        if (photoHolderUri == null) return;
+        AppExecutors.getInstance().compute().execute(() -> {
+            Bitmap bitmap = getBitmapFromUri(photoHolderUri, activity);
+            AppExecutors.getInstance().main().execute(() -> {
+                if (bitmap == null || activity.isFinishing()) return;
+                imageView.setImageBitmap(bitmap);
+                this.uri = photoHolderUri;
+                listener.onPhoto(photoHolderUri);
+            });
+        });
     }
 
     public static Uri bitmapToUri(Bitmap image, Context context) {
@@ -18,6 +18,8 @@ public class ComposeViewModel extends ViewModel {
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> loading = new MutableLiveData<>(false);
     private final MutableLiveData<String> sendInfoMessage = new MutableLiveData<>();
+    // The mail as the server now has it, set just before the success flags
+    private final MutableLiveData<Mail> savedMail = new MutableLiveData<>();
 
     private final ApiService apiService = ApiClient.getInstance().getApiService();
 
@@ -26,6 +28,7 @@ public class ComposeViewModel extends ViewModel {
     public LiveData<String> getErrorMessage() { return errorMessage; }
     public LiveData<Boolean> getLoading() { return loading; }
     public LiveData<String> getSendInfoMessage() { return sendInfoMessage; }
+    public LiveData<Mail> getSavedMail() { return savedMail; }
 
     public void sendMail(String bearerToken, String to, String subject, String body) {
         loading.setValue(true);
@@ -45,6 +48,7 @@ public class ComposeViewModel extends ViewModel {
                 loading.setValue(false);
                 if (response.isSuccessful() && response.body() != null) {
                     Mail createdMail = response.body();
+                    savedMail.setValue(createdMail);
                     sendSuccess.setValue(true);
                     if ("spam".equals(createdMail.getStatus())) {
                         sendInfoMessage.setValue("Mail sent but delivered to spam due to blacklisted content.");
@@ -63,7 +67,7 @@ public class ComposeViewModel extends ViewModel {
         });
     }
 
-    public void updateDraftToSent(String bearerToken, String mailId, String to, String subject, String body) {
+    public void updateDraftToSent(String bearerToken, Mail draft, String to, String subject, String body) {
         loading.setValue(true);
         errorMessage.setValue("");
         sendSuccess.setValue(false);
@@ -74,12 +78,13 @@ public class ComposeViewModel extends ViewModel {
                 body,
                 "sent"
         );
-        Call<Void> call = apiService.updateMail(bearerToken, mailId, updateRequest);
+        Call<Void> call = apiService.updateMail(bearerToken, draft.get_id(), updateRequest);
         call.enqueue(new Callback<Void>() {
             @Override
             public void onResponse(Call<Void> call, Response<Void> response) {
                 loading.setValue(false);
                 if (response.isSuccessful()) {
+                    savedMail.setValue(patched(draft, updateRequest));
                     sendSuccess.setValue(true);
                     sendInfoMessage.setValue("Mail sent successfully!");
                 } else {
@@ -110,6 +115,7 @@ public class ComposeViewModel extends ViewModel {
             public void onResponse(Call<Mail> call, Response<Mail> response) {
                 loading.setValue(false);
                 if (response.isSuccessful() && response.body() != null) {
+                    savedMail.setValue(response.body());
                     draftSuccess.setValue(true);
                 } else {
                     handleDraftError(response.code());
@@ -123,7 +129,7 @@ public class ComposeViewModel extends ViewModel {
         });
     }
 
-    public void updateDraft(String bearerToken, String mailId, String to, String subject, String body) {
+    public void updateDraft(String bearerToken, Mail draft, String to, String subject, String body) {
         loading.setValue(true);
         errorMessage.setValue("");
         draftSuccess.setValue(false);
@@ -133,12 +139,13 @@ public class ComposeViewModel extends ViewModel {
                 body,
                 "draft"
         );
-        Call<Void> call = apiService.updateMail(bearerToken, mailId, updateRequest);
+        Call<Void> call = apiService.updateMail(bearerToken, draft.get_id(), updateRequest);
         call.enqueue(new Callback<Void>() {
             @Override
             public void onResponse(Call<Void> call, Response<Void> response) {
                 loading.setValue(false);
                 if (response.isSuccessful()) {
+                    savedMail.setValue(patched(draft, updateRequest));
                     draftSuccess.setValue(true);
                 } else {
                     handleDraftError(response.code());
@@ -152,6 +159,16 @@ public class ComposeViewModel extends ViewModel {
         });
     }
 
+    // The PATCH answers 204, so the saved mail is the draft with the fields sent
+    private static Mail patched(Mail draft, ApiService.UpdateMailRequest request) {
+        Mail mail = draft.copy();
+        mail.setTo(request.getTo());
+        mail.setSubject(request.getSubject());
+        mail.setBodyPreview(request.getBodyPreview());
+        mail.setStatus(request.getStatus());
+        return mail;
+    }
+
     private void handleSendError(int responseCode) {
         String errorMsg = "Failed to send mail. Please try again.";
         if (responseCode == 400) {
@@ -0,0 +1,424 @@
+package com.example.myapplication.viewModel;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.myapplication.MailFolder;
+import com.example.myapplication.api.ApiClient;
+import com.example.myapplication.api.ApiService;
+import com.example.myapplication.labels.LabelIndex;
+import com.example.myapplication.labels.LabelStore;
+import com.example.myapplication.models.Label;
+import com.example.myapplication.models.Mail;
+import com.example.myapplication.models.OutboxEntry;
+import com.example.myapplication.models.User;
+import com.example.myapplication.repository.FolderCache;
+import com.example.myapplication.repository.FolderPager;
+import com.example.myapplication.repository.LabelPager;
+import com.example.myapplication.repository.MailRepository;
+import com.example.myapplication.repository.Outbox;
+import com.example.myapplication.repository.PrefetchScheduler;
+import com.example.myapplication.search.MailSearch;
+import com.example.myapplication.utils.AuthManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * State of the mailbox screen that outlives its activity: the signed-in user, the
+ * open folder or label with its pagers, the search query and the rows it yields,
+ * and the outbox state of those rows. A rotation or theme switch attaches the new
+ * activity to what is already here, so it costs no request and no re-filtering;
+ * calls in flight report to whichever activity observes by then. Main thread only.
+ */
+public class MailboxViewModel extends AndroidViewModel {
+    private final MailRepository repository;
+    private final ApiService apiService;
+    private final AuthManager authManager;
+    private final Outbox outbox;
+    private final LabelStore labelStore;
+    private final LabelIndex labelIndex; // Owned by labelStore
+    private final MailSearch mailSearch;
+    private final PrefetchScheduler prefetchScheduler; // Warms likely next folders and mails while idle
+    private final FolderCache folderCache; // Folders switched away from, with their scroll state
+
+    private final MutableLiveData<User> currentUser = new MutableLiveData<>();
+    // Set by loadUser or by the outbox when the server refuses the token
+    private final MediatorLiveData<Boolean> sessionExpired = new MediatorLiveData<>();
+    // The rows to show: the folder window or label pages, filtered by the query
+    private final MediatorLiveData<List<Mail>> shownMails = new MediatorLiveData<>();
+    private final MutableLiveData<Boolean> refreshing = new MutableLiveData<>(false);
+    private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
+    // Mail id -> outbox state, for the rows whose change the server has not confirmed
+    private final MediatorLiveData<Map<Long, String>> outboxStates = new MediatorLiveData<>();
+
+    private boolean started;
+    private MailFolder currentFolder = MailFolder.INBOX;
+    private Label currentLabel; // Selected label, shown across folders; null when none
+    private String query = "";
+    private FolderPager folderPager; // Pages the cached mails of the current folder
+    private LabelPager labelPager; // Server pages of currentLabel
+    private List<Mail> allMails = new ArrayList<>();
+    private List<Mail> labelMails = new ArrayList<>();
+    private Parcelable pendingScrollState; // Applied once the cached folder's rows are shown
+    private int failedOutboxEntries;
+
+    public MailboxViewModel(@NonNull Application application) {
+        super(application);
+        repository = MailRepository.getInstance(application);
+        apiService = ApiClient.getInstance().getApiService();
+        authManager = AuthManager.getInstance(application);
+        outbox = Outbox.getInstance(application);
+        labelStore = LabelStore.getInstance(application);
+        labelIndex = labelStore.getIndex();
+        mailSearch = new MailSearch(repository, apiService, authManager::getBearerToken);
+        prefetchScheduler = new PrefetchScheduler(application, repository);
+        folderCache = new FolderCache(folderCacheBudget(application));
+        outboxStates.addSource(outbox.getEntries(), this::onOutboxChanged);
+        sessionExpired.setValue(false);
+        sessionExpired.addSource(outbox.getSessionExpired(), expired -> {
+            if (Boolean.TRUE.equals(expired)) sessionExpired.setValue(true);
+        });
+    }
+
+    public LiveData<User> getCurrentUser() { return currentUser; }
+    public LiveData<Boolean> getSessionExpired() { return sessionExpired; }
+    public LiveData<List<Mail>> getShownMails() { return shownMails; }
+    public LiveData<Boolean> getRefreshing() { return refreshing; }
+    public LiveData<String> getErrorMessage() { return errorMessage; }
+    public LiveData<Map<Long, String>> getOutboxStates() { return outboxStates; }
+    public LiveData<List<Label>> getLabels() { return labelStore.getLabels(); }
+    public MailFolder getCurrentFolder() { return currentFolder; }
+    public Label getCurrentLabel() { return currentLabel; }
+
+    // Mails of the folder window, before label and query filtering
+    public List<Mail> getLoadedMails() { return allMails; }
+
+    public boolean isRefreshing() {
+        return Boolean.TRUE.equals(refreshing.getValue());
+    }
+
+    // Search text spans every folder, so the list no longer follows the folder window
+    public boolean isSearching() {
+        return query.trim().length() > 0;
+    }
+
+    // Load the user, labels and mails; later activities of the same screen find them here
+    public void start() {
+        if (started) return;
+        started = true;
+        loadUser();
+        // The store answers from its cache at once; this only refreshes it
+        labelStore.refresh(authManager.getBearerToken(), null);
+        observeFolder(currentFolder, null);
+        syncFolder();
+    }
+
+    private void loadUser() {
+        apiService.getCurrentUser(authManager.getBearerToken()).enqueue(new Callback<ApiService.UserResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.UserResponse> call, Response<ApiService.UserResponse> response) {
+                if (response.isSuccessful() && response.body() != null) {
+                    currentUser.setValue(response.body().getUser());
+                } else if (response.code() == 401 || response.code() == 403) {
+                    sessionExpired.setValue(true);
+                }
+                // Any other failure keeps the cached mailbox; the next refresh asks again
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.UserResponse> call, Throwable t) {
+                // Offline: the cached mailbox stays usable, the next refresh asks again
+            }
+        });
+    }
+
+    /**
+     * Open a folder and bring it up to date. listState is the scroll state of
+     * the list being left, kept with its folder when it shows the plain folder.
+     */
+    public void selectFolder(MailFolder folder, Parcelable listState) {
+        currentFolder = folder;
+        observeFolder(folder, listState);
+        syncFolder();
+    }
+
+    // Swap the rows over to the cached copy of a folder; it paints from disk right away
+    private void observeFolder(MailFolder folder, Parcelable listState) {
+        if (folderPager != null) {
+            shownMails.removeSource(folderPager.getWindow());
+            // Keep the folder being left; the scroll state only means something for its plain list
+            boolean plainList = currentLabel == null && !isSearching();
+            folderCache.put(folderPager, plainList ? listState : null);
+        }
+
+        // Clear search and label when switching folders
+        query = "";
+        currentLabel = null;
+        stopLabelPager();
+
+        FolderCache.Entry cached = folderCache.take(folder);
+        if (cached != null) {
+            // The pager's window still holds the last rows and is delivered on addSource,
+            // so the list paints at once; syncFolder revalidates it
+            folderPager = cached.getPager();
+            pendingScrollState = cached.getScrollState();
+        } else {
+            allMails = new ArrayList<>();
+            shownMails.setValue(new ArrayList<>());
+            folderPager = new FolderPager(repository, folder);
+            pendingScrollState = null;
+        }
+        shownMails.addSource(folderPager.getWindow(), this::onFolderWindowChanged);
+    }
+
+    // Scroll state to restore once the rows of a folder taken from the cache are shown
+    public Parcelable takePendingScrollState() {
+        Parcelable state = pendingScrollState;
+        pendingScrollState = null;
+        return state;
+    }
+
+    // The adapter diffs the new window against the old one, so rows sliding in or out
+    // at the edges are item removals/insertions and the visible rows stay in place
+    private void onFolderWindowChanged(FolderPager.Window window) {
+        allMails = window.getMails() != null ? new ArrayList<>(window.getMails()) : new ArrayList<>();
+        labelIndex.indexMails(allMails);
+        filter(false);
+    }
+
+    // Bring the cache up to date with a delta sync; the open folder is only reloaded
+    // when the server has no delta for us or the folder was not loaded since the last reset
+    private void syncFolder() {
+        refreshing.setValue(true);
+        repository.sync(authManager.getBearerToken(), new MailRepository.SyncCallback() {
+            @Override
+            public void onSynced(int changes) {
+                if (!repository.isFolderLoaded(currentFolder)) {
+                    refreshFolder();
+                    return;
+                }
+                refreshing.setValue(false);
+                schedulePrefetch();
+            }
+
+            @Override
+            public void onResetRequired() {
+                refreshFolder();
+            }
+
+            @Override
+            public void onError(String message) {
+                refreshFolder();
+            }
+        });
+    }
+
+    // Reload the first page of the open folder; the window observer shows the result
+    private void refreshFolder() {
+        refreshing.setValue(true);
+        folderPager.refresh(authManager.getBearerToken(), new MailRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(String nextCursor) {
+                refreshing.setValue(false);
+                schedulePrefetch();
+            }
+
+            @Override
+            public void onError(String message) {
+                refreshing.setValue(false);
+                errorMessage.setValue(message);
+            }
+        });
+    }
+
+    // Pull-to-refresh: sync the open folder, and refetch the label pages when a label is shown
+    public void reloadFromServer() {
+        if (currentUser.getValue() == null) {
+            loadUser();
+        }
+        // What the server rejected is shown as it really is again
+        outbox.clearFailed();
+        if (currentLabel != null) {
+            startLabelPager(currentLabel);
+        }
+        syncFolder();
+    }
+
+    // The folder is up to date; use the idle time after it to warm what comes next
+    private void schedulePrefetch() {
+        prefetchScheduler.schedule(authManager.getBearerToken(), currentFolder, allMails);
+    }
+
+    public void selectLabel(Label label) {
+        currentLabel = label;
+        startLabelPager(label);
+        filter(false);
+    }
+
+    // The label's mails in other folders and on unloaded pages come from the server
+    private void startLabelPager(Label label) {
+        stopLabelPager();
+        labelPager = new LabelPager(apiService, label.getId(), mails -> {
+            labelMails = mails;
+            labelIndex.indexMails(mails);
+            filter(false);
+        });
+        labelPager.loadMore(authManager.getBearerToken());
+    }
+
+    private void stopLabelPager() {
+        if (labelPager != null) {
+            labelPager.cancel();
+            labelPager = null;
+        }
+        labelMails = new ArrayList<>();
+    }
+
+    // Loaded folder mails plus the label pages, newest first and without duplicates
+    private List<Mail> labelSearchBase() {
+        List<Mail> base = new ArrayList<>(labelMails);
+        Set<Long> ids = new HashSet<>();
+        for (Mail mail : labelMails) {
+            ids.add(mail.getId());
+        }
+        for (Mail mail : allMails) {
+            if (ids.add(mail.getId())) base.add(mail);
+        }
+        base.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+        return base;
+    }
+
+    // The outbox already wrote the labels to Room, which redraws the folder;
+    // the label view reads the index
+    public void onLabelsApplied(List<String> labelIds, Set<String> serverMailIds) {
+        for (String labelId : labelIds) {
+            labelIndex.addMails(labelId, serverMailIds);
+        }
+        filter(false);
+    }
+
+    // Every edit of the search field; the text an activity restores after a rotation
+    // is the query already shown and starts nothing
+    public void setQuery(String newQuery, boolean debounce) {
+        if (newQuery.equals(query)) return;
+        query = newQuery;
+        filter(debounce);
+    }
+
+    // Matching runs in the background; typing is debounced and a newer query
+    // cancels the previous one
+    private void filter(boolean debounce) {
+        // Includes the mails of sub-labels
+        LabelIndex.Filter labelFilter = currentLabel != null ? labelIndex.filter(currentLabel.getId()) : null;
+        List<Mail> base = currentLabel != null ? labelSearchBase() : allMails;
+        // results is not touched again, the adapter can keep it
+        mailSearch.filter(base, labelFilter, query, debounce, shownMails::setValue);
+    }
+
+    // Page whatever the list shows as the user nears its end
+    public void onScrolled(int firstVisible, int lastVisible, int itemCount) {
+        boolean nearEnd = lastVisible >= itemCount - FolderPager.PREFETCH_DISTANCE;
+        if (isSearching()) {
+            // Search results page through the server instead of the folder
+            if (nearEnd) mailSearch.loadMore();
+            return;
+        }
+        if (labelPager != null) {
+            // A label pages its own mails from the server, across folders
+            if (nearEnd) labelPager.loadMore(authManager.getBearerToken());
+            return;
+        }
+        // Page only the unfiltered list, filtered positions do not map onto the folder
+        List<Mail> shown = shownMails.getValue();
+        if (folderPager == null || shown == null || shown.size() != allMails.size()) return;
+        folderPager.onScrolled(authManager.getBearerToken(), firstVisible, lastVisible, itemCount);
+    }
+
+    // Forget the user and everything cached for them, so the next account starts
+    // empty and none of this user's queued changes go out with its token
+    public void logout() {
+        outbox.clear();
+        repository.clearAll();
+        labelStore.clear();
+        authManager.logout();
+    }
+
+    public void emptyTrash() {
+        apiService.emptyTrash(authManager.getBearerToken()).enqueue(new Callback<ApiService.ApiResponse>() {
+            @Override
+            public void onResponse(Call<ApiService.ApiResponse> call, Response<ApiService.ApiResponse> response) {
+                if (response.isSuccessful()) {
+                    // Clear the cached trash, the window observer empties the view
+                    repository.clearFolder(MailFolder.TRASH.getServerKey());
+                    errorMessage.setValue("Trash emptied successfully");
+                } else {
+                    errorMessage.setValue("Failed to empty trash");
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ApiService.ApiResponse> call, Throwable t) {
+                errorMessage.setValue("Network error: " + t.getMessage());
+            }
+        });
+    }
+
+    // Rows whose change has not reached the server yet are marked in the list
+    private void onOutboxChanged(List<OutboxEntry> entries) {
+        Map<Long, String> states = new HashMap<>();
+        int failed = 0;
+        for (OutboxEntry entry : entries) {
+            if (OutboxEntry.STATE_FAILED.equals(entry.getState())) {
+                failed++;
+                states.put(entry.getLocalId(), OutboxEntry.STATE_FAILED);
+            } else if (!states.containsKey(entry.getLocalId())) {
+                states.put(entry.getLocalId(), OutboxEntry.STATE_PENDING);
+            }
+        }
+        if (failed > failedOutboxEntries) {
+            errorMessage.setValue("Some changes were rejected by the server. Pull to refresh.");
+        }
+        failedOutboxEntries = failed;
+        outboxStates.setValue(states);
+    }
+
+    // A message is shown once, not again by the next activity
+    public void onErrorShown() {
+        errorMessage.setValue(null);
+    }
+
+    // Called from ComponentCallbacks2.onTrimMemory
+    public void trimMemory(int level) {
+        folderCache.trimMemory(level);
+    }
+
+    // Heap budget for folders kept in the background: 1/16 of the app's memory class
+    private static long folderCacheBudget(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager.getMemoryClass() * 1024L * 1024L / 16;
+    }
+
+    @Override
+    protected void onCleared() {
+        mailSearch.shutdown();
+        prefetchScheduler.shutdown();
+        stopLabelPager();
+    }
+}
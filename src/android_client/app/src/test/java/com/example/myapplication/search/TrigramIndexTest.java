@@ -0,0 +1,140 @@
+package com.example.myapplication.search;
+
+import com.example.myapplication.models.Mail;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the substring index behind the cached mail search.
+ */
+public class TrigramIndexTest {
+
+    private static Mail mail(long id, String from, String subject, String bodyPreview) {
+        Mail mail = new Mail();
+        mail.setId(id);
+        mail.setFrom(from);
+        mail.setSubject(subject);
+        mail.setBodyPreview(bodyPreview);
+        mail.setTo("me@example.com");
+        return mail;
+    }
+
+    @Test
+    public void search_findsSubstringInAnyField() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "alice@doar.com", "Lunch", "see you at noon"));
+        index.add(mail(2, "bob@example.com", "Quarterly report", null));
+
+        assertArrayEquals(new long[]{1}, index.search("oar.c", 10));
+        assertArrayEquals(new long[]{2}, index.search("terly rep", 10));
+        assertArrayEquals(new long[]{1}, index.search("at noo", 10));
+        assertArrayEquals(new long[0], index.search("missing", 10));
+    }
+
+    @Test
+    public void search_returnsNewestFirstUpToLimit() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(10, "a@example.com", "weekly sync", null));
+        index.add(mail(30, "b@example.com", "weekly sync", null));
+        index.add(mail(20, "c@example.com", "weekly sync", null));
+
+        assertArrayEquals(new long[]{30, 20, 10}, index.search("weekly", 10));
+        assertArrayEquals(new long[]{30, 20}, index.search("weekly", 2));
+    }
+
+    @Test
+    public void search_doesNotMatchAcrossFields() {
+        TrigramIndex index = new TrigramIndex();
+        // from ends with "ab", subject starts with "cd"
+        index.add(mail(1, "ab", "cd", null));
+
+        assertArrayEquals(new long[0], index.search("abcd", 10));
+        assertArrayEquals(new long[0], index.search("bc", 10));
+    }
+
+    @Test
+    public void search_ignoresCaseLikeRegionMatches() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "x@example.com", "Hello World", null));
+        // LATIN SMALL LETTER LONG S upper-cases to 'S'
+        index.add(mail(2, "y@example.com", "\u017Ftatus", null));
+
+        assertArrayEquals(new long[]{1}, index.search("hELLO wORLD", 10));
+        assertArrayEquals(new long[]{2}, index.search("STATUS", 10));
+        assertTrue("status".regionMatches(true, 0, "\u017Ftatus", 0, 6));
+    }
+
+    @Test
+    public void search_shortQueriesScanEveryDocument() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "x@example.com", "Hi", null));
+        index.add(mail(2, "y@example.com", "Other", null));
+
+        assertArrayEquals(new long[]{2, 1}, index.search("h", 10));
+        assertArrayEquals(new long[]{1}, index.search("HI", 10));
+        assertArrayEquals(new long[]{2, 1}, index.search("@", 10));
+        assertArrayEquals(new long[0], index.search("", 10));
+    }
+
+    @Test
+    public void remove_dropsMailFromResults() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "x@example.com", "invoice", null));
+        index.add(mail(2, "y@example.com", "invoice", null));
+
+        index.remove(1);
+        assertArrayEquals(new long[]{2}, index.search("invoice", 10));
+        assertArrayEquals(new long[]{2}, index.search("in", 10));
+        // Removing an unknown id is a no-op
+        index.remove(99);
+        assertArrayEquals(new long[]{2}, index.search("invoice", 10));
+    }
+
+    @Test
+    public void add_replacesTextOfKnownMail() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "x@example.com", "draft one", null));
+        index.add(mail(1, "x@example.com", "final version", null));
+
+        assertArrayEquals(new long[0], index.search("draft", 10));
+        assertArrayEquals(new long[]{1}, index.search("final", 10));
+    }
+
+    @Test
+    public void compaction_keepsLiveMailsSearchable() {
+        TrigramIndex index = new TrigramIndex();
+        int total = 3000;
+        for (int id = 1; id <= total; id++) {
+            index.add(mail(id, "user" + id + "@example.com", "subject " + id, null));
+        }
+        // Deleting most documents compacts the index
+        for (int id = 1; id <= 2500; id++) {
+            index.remove(id);
+        }
+
+        assertArrayEquals(new long[0], index.search("user1@", 10));
+        assertArrayEquals(new long[]{2501}, index.search("user2501@", 10));
+        assertEquals(500, index.search("example", total).length);
+        assertEquals(total, index.search("example", total)[0]);
+
+        // Documents added after a compaction still come out newest first
+        index.add(mail(5000, "late@example.com", "subject late", null));
+        long[] hits = index.search("example", total);
+        assertEquals(501, hits.length);
+        assertEquals(5000, hits[0]);
+        assertArrayEquals(new long[]{5000}, index.search("late@", 10));
+    }
+
+    @Test
+    public void clear_dropsEverything() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(mail(1, "x@example.com", "hello", null));
+        index.clear();
+
+        assertArrayEquals(new long[0], index.search("hello", 10));
+        index.add(mail(2, "y@example.com", "hello", null));
+        assertArrayEquals(new long[]{2}, index.search("hello", 10));
+    }
+}
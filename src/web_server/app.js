@@ -7,6 +7,7 @@ require('./utils/db');
 const express = require('express');
 const app = express();
 const upload = require('./utils/upload');
+const { revalidate } = require('./utils/httpCache');
 
 // Ensure uploads directory exists
 const uploadsDir = path.resolve(process.cwd(), 'uploads');
@@ -53,20 +54,22 @@ const spamRoute = require('./routes/spam');
 const trashRoute = require('./routes/trash');
 const starredRoute = require('./routes/starred');
 const searchRoute = require('./routes/searchRoutes');
+const syncRoute = require('./routes/syncRoutes');
 const { loginUser } = require('./controllers/userController');
 
 // API Endpoints
 app.use('/api/blacklist', blacklistRoute);
-app.use('/api/users', userRoute);
-app.use('/api/mails', mailRoute);
-app.use('/api/inbox', inboxRoute);
-app.use('/api/drafts', draftsRoute);
-app.use('/api/sent', sentRoute);
-app.use('/api/spam', spamRoute);
-app.use('/api/trash', trashRoute);
-app.use('/api/starred', starredRoute);
-app.use('/api/labels', labelRoute);
+app.use('/api/users', revalidate, userRoute);
+app.use('/api/mails', revalidate, mailRoute);
+app.use('/api/inbox', revalidate, inboxRoute);
+app.use('/api/drafts', revalidate, draftsRoute);
+app.use('/api/sent', revalidate, sentRoute);
+app.use('/api/spam', revalidate, spamRoute);
+app.use('/api/trash', revalidate, trashRoute);
+app.use('/api/starred', revalidate, starredRoute);
+app.use('/api/labels', revalidate, labelRoute);
 app.use('/api/search', searchRoute);
+app.use('/api/sync', syncRoute);
 
 // Special login endpoint
 app.post('/api/tokens', loginUser);
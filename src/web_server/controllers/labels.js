@@ -1,6 +1,7 @@
 const mongoose = require('mongoose');
 const Label = require('../models/labels');
 const labelService = require('../services/labelsService');
+const { parsePaging } = require('../utils/mailUtils');
 
 exports.listLabels = async (req, res) => {
   try {
@@ -90,6 +91,24 @@ exports.getLabel = async (req, res) => {
   }
 };
 
+// GET /api/labels/:id/mails?limit=&cursor=
+exports.listLabelMails = async (req, res) => {
+  try {
+    const username = req.user.username;
+    const { limit, cursor } = parsePaging(req.query);
+
+    const page = await labelService.listLabelMailsPage(username, req.params.id, { limit, cursor });
+    if (!page) {
+      return res.status(404).json({ error: 'Label not found' });
+    }
+
+    res.status(200).json(page);
+  } catch (err) {
+    console.error(err);
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch label mails.' });
+  }
+};
+
 exports.editLabel = async (req, res) => {
   try {
     const username = req.user.username;
@@ -1,6 +1,8 @@
 const mailService = require('../services/mailsService');
 const User = require('../models/userModel');
 const mongoose = require('mongoose');
+const { parsePaging } = require('../utils/mailUtils');
+const { setLastModified } = require('../utils/httpCache');
 
 const ALLOWED_FIELDS = ['to', 'subject', 'bodyPreview', 'status'];
 const REQUIRED_FIELDS = ['to'];
@@ -83,11 +85,14 @@ exports.getMailById = async (req, res) => {
   try {
     const username = req.user.username;
     const mailId = req.params.id;
-    const mail = await mailService.getMailById(username, mailId);
+    // ?peek=true reads the mail without marking it read
+    const markRead = req.query.peek !== 'true';
+    const mail = await mailService.getMailById(username, mailId, { markRead });
 
     if (!mail) {
       throw { status: 404, error: 'Mail not found in your inbox, sent, drafts, or spam.' };
     }
+    setLastModified(res, mail.updatedAt);
     res.status(200).json(mail);
   } catch (err) {
     res.status(err.status || 500).json({ error: err.error || 'Failed to get mail' });
@@ -233,6 +238,33 @@ exports.searchMails = async (req, res) => {
 
 
 
+exports.batchMutate = async (req, res) => {
+  try {
+    const username = req.user.username;
+    const { ids, op, labelId } = req.body || {};
+
+    if (!mailService.BATCH_OPERATIONS.includes(op))
+      throw { status: 400, error: `op must be one of: ${mailService.BATCH_OPERATIONS.join(', ')}` };
+
+    if (!Array.isArray(ids) || ids.length === 0)
+      throw { status: 400, error: 'ids must be a non-empty array.' };
+
+    if (ids.length > mailService.MAX_BATCH_SIZE)
+      throw { status: 400, error: `At most ${mailService.MAX_BATCH_SIZE} mails per batch.` };
+
+    if (op === 'label' && !mongoose.isValidObjectId(labelId))
+      throw { status: 400, error: 'labelId must be a valid ObjectId.' };
+
+    // duplicate ids would be applied twice
+    const uniqueIds = [...new Set(ids.map(String))];
+    const result = await mailService.batchMutate(username, op, uniqueIds, { labelId });
+    res.status(200).json(result);
+  } catch (err) {
+    console.error('batchMutate error:', err);
+    res.status(err.status || 500).json({ error: err.error || 'Batch operation failed.' });
+  }
+};
+
 exports.toggleStarred = async (req, res) => {
   try {
     const username = req.user.username;
@@ -254,17 +286,40 @@ exports.toggleStarred = async (req, res) => {
   }
 };
 
+// PUT bodies carry the wanted state, so a retried request is harmless
+const setFlag = (flag) => async (req, res) => {
+  try {
+    const username = req.user.username;
+    const value = (req.body || {})[flag];
+
+    if (typeof value !== 'boolean')
+      throw { status: 400, error: `${flag} must be true or false.` };
+
+    const result = await mailService.setMailFlags(username, req.params.id, { [flag]: value });
+    if (!result)
+      throw { status: 404, error: 'Mail not found for this user' };
+
+    res.status(200).json(result);
+  } catch (err) {
+    console.error(`set ${flag} error:`, err);
+    res.status(err.status || 500).json({ error: err.error || `Failed to set ${flag} status` });
+  }
+};
+
+exports.setStarred = setFlag('starred');
+exports.setRead = setFlag('read');
+
 
 exports.getTrash = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const result = await mailService.getTrash(username, page);
+    const result = await mailService.getTrash(username, page, limit, cursor);
 
     res.status(200).json(result);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch trash' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch trash' });
   }
 };
 
@@ -361,73 +416,73 @@ exports.unmarkAsSpam = async (req, res) => {
 exports.getSpam = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const spam = await mailService.getSpam(username, page);
+    const spam = await mailService.getSpam(username, page, limit, cursor);
 
     res.status(200).json(spam);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch spam mails.' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch spam mails.' });
   }
 };
 
 exports.getDrafts = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const drafts = await mailService.getDrafts(username, page);
+    const drafts = await mailService.getDrafts(username, page, limit, cursor);
     res.status(200).json(drafts);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch drafts.' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch drafts.' });
   }
 };
 
 exports.getInbox = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const inbox = await mailService.getInbox(username, page);
+    const inbox = await mailService.getInbox(username, page, limit, cursor);
     res.status(200).json(inbox);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch inbox.' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch inbox.' });
   }
 };
 
 exports.getSent = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const sent = await mailService.getSent(username, page);
+    const sent = await mailService.getSent(username, page, limit, cursor);
     res.status(200).json(sent);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch sent mails.' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch sent mails.' });
   }
 };
 
 exports.getStarredMails = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const starred = await mailService.getStarredMails(username, page);
+    const starred = await mailService.getStarredMails(username, page, limit, cursor);
     res.status(200).json(starred);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch starred mails' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch starred mails' });
   }
 };
 
 exports.getAllMails = async (req, res) => {
   try {
     const username = req.user.username;
-    const page = parseInt(req.query.page) || 0;
+    const { page, limit, cursor } = parsePaging(req.query);
 
-    const result = await mailService.getAllMails(username, page);
+    const result = await mailService.getAllMails(username, page, limit, cursor);
     res.status(200).json(result);
   } catch (err) {
-    res.status(500).json({ error: 'Failed to fetch all mails.' });
+    res.status(err.status || 500).json({ error: err.error || 'Failed to fetch all mails.' });
   }
 };
 
@@ -1,5 +1,6 @@
 const mailService = require('../services/mailsService');
 const mongoose = require('mongoose');
+const { parsePaging } = require('../utils/mailUtils');
 exports.searchMails = async (req, res) => {
     try {
         const username = req.user.username;
@@ -7,8 +8,19 @@ exports.searchMails = async (req, res) => {
 
         let results = [];
 
+        // Paged simple search: clients that send limit or cursor get one page and a nextCursor
+        if (q && (req.query.limit || req.query.cursor)) {
+            const { limit, cursor } = parsePaging(req.query);
+            const page = await mailService.searchMailsPage(username, q, { limit, cursor });
+            return res.status(200).json({
+                results: page.results,
+                count: page.results.length,
+                nextCursor: page.nextCursor,
+                searchParams: req.query
+            });
+        }
         // Simple search (legacy support)
-        if (q) {
+        else if (q) {
             results = await mailService.searchMailsByUser(username, q);
         }
         // Advanced search
@@ -34,6 +46,6 @@ exports.searchMails = async (req, res) => {
         });
 
     } catch (error) {
-        res.status(500).json({ error: 'Search failed' });
+        res.status(error.status || 500).json({ error: error.error || 'Search failed' });
     }
 };
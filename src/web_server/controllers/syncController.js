@@ -0,0 +1,11 @@
+const mailService = require('../services/mailsService');
+
+exports.sync = async (req, res) => {
+  try {
+    const username = req.user.username;
+    const changes = await mailService.getChangesSince(username, req.query.since);
+    res.status(200).json(changes);
+  } catch (err) {
+    res.status(err.status || 500).json({ error: err.error || 'Sync failed' });
+  }
+};
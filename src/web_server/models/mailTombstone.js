@@ -0,0 +1,24 @@
+const mongoose = require('mongoose');
+
+// Retention of tombstones; clients that synced longer ago get a full reset
+const TOMBSTONE_TTL_DAYS = 30;
+
+// Marks a view that left a folder, so delta sync can tell clients to drop it
+const mailTombstoneSchema = new mongoose.Schema({
+  username: { type: String, required: true },
+  mailId: { type: mongoose.Schema.Types.ObjectId, required: true },
+  folder: { type: String, required: true },
+  deletedAt: { type: Date, default: Date.now, expires: TOMBSTONE_TTL_DAYS * 24 * 60 * 60 }
+});
+
+mailTombstoneSchema.index({ username: 1, deletedAt: 1 });
+
+mailTombstoneSchema.statics.TTL_MS = TOMBSTONE_TTL_DAYS * 24 * 60 * 60 * 1000;
+
+// Record one tombstone per removed view
+mailTombstoneSchema.statics.record = function (views) {
+  if (views.length === 0) return Promise.resolve();
+  return this.insertMany(views.map(({ username, mailId, folder }) => ({ username, mailId, folder })));
+};
+
+module.exports = mongoose.model('MailTombstone', mailTombstoneSchema);
@@ -10,8 +10,30 @@ const mailUserViewSchema = new mongoose.Schema({
   starred: { type: Boolean, default: false },
   originalFolders: { type: [String], default: [] },
   deletedAt: { type: Number },
+  // copy of the mail's timestamp, so folder listings sort and page on the view alone
+  timestamp: { type: Number, default: 0 },
 }, { timestamps: true });
 
 mailUserViewSchema.index({ username: 1, mailId: 1, folder: 1 }, { unique: true });
+// keyset pagination of folders and of the starred view
+mailUserViewSchema.index({ username: 1, folder: 1, timestamp: -1, _id: -1 });
+mailUserViewSchema.index({ username: 1, starred: 1, timestamp: -1, _id: -1 });
+
+// Views created before the timestamp field existed take it from their mail
+mailUserViewSchema.statics.backfillTimestamps = async function () {
+  const Mail = require('./mails');
+  const views = await this.find({ timestamp: { $in: [null, 0] } }, { mailId: 1 }).lean();
+  if (views.length === 0) return 0;
+
+  const mails = await Mail.find({ _id: { $in: views.map(v => v.mailId) } }, { timestamp: 1 }).lean();
+  const timestamps = new Map(mails.map(m => [m._id.toString(), m.timestamp]));
+  const ops = views
+    .filter(v => timestamps.has(v.mailId.toString()))
+    .map(v => ({
+      updateOne: { filter: { _id: v._id }, update: { $set: { timestamp: timestamps.get(v.mailId.toString()) } } }
+    }));
+  if (ops.length > 0) await this.bulkWrite(ops);
+  return ops.length;
+};
 
 module.exports = mongoose.model('MailUserView', mailUserViewSchema);
\ No newline at end of file
@@ -21,4 +21,7 @@ const mailSchema = new mongoose.Schema({
   labelIds: [{ type: mongoose.Schema.Types.ObjectId, ref: 'Label' }]
 });
 
+// Label contents are paged newest first straight off this (multikey) index
+mailSchema.index({ labelIds: 1, timestamp: -1, _id: -1 });
+
 module.exports = mongoose.model('Mail', mailSchema);
\ No newline at end of file
@@ -14,7 +14,9 @@ router.route('/:id')
   .delete(authenticateToken, labelController.deleteLabel);
 
 router.post('/:id/addMail', authenticateToken, labelController.addMailToLabel);
-router.post('/:id/mails', authenticateToken, labelController.addMailToLabel);
+router.route('/:id/mails')
+  .get(authenticateToken, labelController.listLabelMails)
+  .post(authenticateToken, labelController.addMailToLabel);
 
 
 module.exports = router;
\ No newline at end of file
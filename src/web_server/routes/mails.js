@@ -9,6 +9,7 @@ router.route('/')
   .post(authenticateToken, upload.any(), mailController.createMail);
 
 router.get('/all', authenticateToken, mailController.getAllMails);
+router.post('/batch', authenticateToken, mailController.batchMutate);
 router.get('/search/:query', authenticateToken, mailController.searchMails);
 
 router.route('/:id')
@@ -16,4 +17,6 @@ router.route('/:id')
   .patch(authenticateToken, upload.any(), mailController.updateMail)
   .delete(authenticateToken, mailController.deleteMail);
 
+router.put('/:id/read', authenticateToken, mailController.setRead);
+
 module.exports = router;
\ No newline at end of file
@@ -1,10 +1,11 @@
 const express = require('express');
 const router = express.Router();
-const { getStarredMails, toggleStarred, isMailStarred } = require('../controllers/mails');
+const { getStarredMails, toggleStarred, setStarred, isMailStarred } = require('../controllers/mails');
 const authenticateToken = require('../utils/authMiddleware');
 
 router.get('/', authenticateToken, getStarredMails);
 router.get('/:id', authenticateToken, isMailStarred);
 router.post('/:id', authenticateToken, toggleStarred);
+router.put('/:id', authenticateToken, setStarred);
 
 module.exports = router;
@@ -0,0 +1,8 @@
+const express = require('express');
+const router = express.Router();
+const syncController = require('../controllers/syncController');
+const authenticateToken = require('../utils/authMiddleware');
+
+router.get('/', authenticateToken, syncController.sync);
+
+module.exports = router;
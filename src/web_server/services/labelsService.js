@@ -1,7 +1,7 @@
 const Label = require('../models/labels');
 const mongoose = require('mongoose');
 const MailUserView = require('../models/mailUserView');
-const { dedupeByMailId } = require('../utils/mailUtils');
+const { dedupeByMailId, comesFirst, encodeCursor, decodeCursor } = require('../utils/mailUtils');
 const Mail = require('../models/mails'); // Ensure Mail model is imported
 
 const listLabelsByUser = async (username) => {
@@ -76,6 +76,89 @@ const getLabelWithMails = async (username, labelId) => {
   };
 };
 
+// The label and every label below it through parent, as ObjectIds
+const labelSubtree = async (username, labelId) => {
+  const labels = await Label.find({ username }, { parent: 1 }).lean();
+  const children = new Map();
+  for (const l of labels) {
+    if (!l.parent) continue;
+    const key = l.parent.toString();
+    if (!children.has(key)) children.set(key, []);
+    children.get(key).push(l._id);
+  }
+
+  const ids = [];
+  const seen = new Set();
+  const pending = [labelId];
+  while (pending.length > 0) {
+    const id = pending.pop();
+    if (seen.has(id.toString())) continue; // parent cycles
+    seen.add(id.toString());
+    ids.push(id);
+    pending.push(...(children.get(id.toString()) || []));
+  }
+  return ids;
+};
+
+// One page of the mails of a label and its sub-labels, newest first. Mails are
+// found through their labelIds index instead of an $in over the whole
+// label.mailIds array, so a page costs the same for a label with 20 mails or 20k.
+const listLabelMailsPage = async (username, labelId, { limit = 30, cursor } = {}) => {
+  if (!mongoose.isValidObjectId(labelId)) return null;
+  const label = await Label.exists({ username, _id: labelId });
+  if (!label) return null;
+
+  const subtree = await labelSubtree(username, label._id);
+  let after = cursor ? decodeCursor(cursor) : null;
+
+  // Mails this user has no view of are dropped before the limit, so fetch
+  // batches until a full page (plus one) is found
+  const pageMails = [];
+  const viewByMail = new Map();
+  while (pageMails.length <= limit) {
+    const query = { labelIds: { $in: subtree } };
+    if (after) {
+      query.$or = [
+        { timestamp: { $lt: after.timestamp } },
+        { timestamp: after.timestamp, _id: { $lt: after._id } }
+      ];
+    }
+    const batch = await Mail.find(query)
+      .sort({ timestamp: -1, _id: -1 })
+      .limit(limit + 1)
+      .lean();
+    if (batch.length === 0) break;
+    after = batch[batch.length - 1];
+
+    // the user's view of each mail carries folder and flags; a self-sent mail
+    // is shown through the view its folder listings use
+    const views = await MailUserView
+      .find({ username, mailId: { $in: batch.map(m => m._id) } })
+      .lean();
+    for (const v of views) {
+      const key = v.mailId.toString();
+      const best = viewByMail.get(key);
+      if (!best || comesFirst(v, best)) viewByMail.set(key, v);
+    }
+    pageMails.push(...batch.filter(m => viewByMail.has(m._id.toString())));
+    if (batch.length <= limit) break; // the labels have no more mails
+  }
+
+  // one extra mail tells whether another page exists
+  const hasMore = pageMails.length > limit;
+  const mails = pageMails.slice(0, limit);
+  const nextCursor = hasMore ? encodeCursor(mails[mails.length - 1]) : null;
+
+  return {
+    limit,
+    nextCursor,
+    mails: mails.map(m => {
+      const { read, starred, folder, status } = viewByMail.get(m._id.toString());
+      return { ...m, read, starred, folder, status };
+    })
+  };
+};
+
 const editLabel = async (username, labelId, { name, color, parentId }) => {
   // Load the existing label document
   const label = await Label.findOne({ _id: labelId, username });
@@ -145,6 +228,15 @@ const deleteLabelById = async (username, labelId) => {
 };
 
 
+// Labels live on the mail document, so a label change is a change of every view
+// of the mail; bumping updatedAt lets delta sync hand the new labelIds to clients
+const touchMailViews = async (mailIds) => {
+  await MailUserView.updateMany(
+    { mailId: { $in: mailIds } },
+    { $set: { updatedAt: new Date() } }
+  );
+};
+
 const addMailToLabel = async (username, labelId, mailId) => {
   // Find the label for this user
   const label = await Label.findOne({ _id: labelId, username });
@@ -167,10 +259,27 @@ const addMailToLabel = async (username, labelId, mailId) => {
     { _id: mailId },
     { $addToSet: { labelIds: labelId } }
   );
+  await touchMailViews([mailId]);
 
   return true;
 };
 
+// Label many mails at once; returns false when the label does not exist
+const addMailsToLabel = async (username, labelId, mailIds) => {
+  const { matchedCount } = await Label.updateOne(
+    { _id: labelId, username },
+    { $addToSet: { mailIds: { $each: mailIds } } }
+  );
+  if (matchedCount === 0) return false;
+
+  await Mail.updateMany(
+    { _id: { $in: mailIds } },
+    { $addToSet: { labelIds: labelId } }
+  );
+  await touchMailViews(mailIds);
+  return true;
+};
+
 const labelNameExists = async (username, name, excludeId = null) => {
   // Build case-insensitive regex to match the exact name (case insenstive)
   const labelName = new RegExp(`^${name.trim()}$`, 'i');
@@ -207,6 +316,7 @@ const removeMailFromLabel = async (username, labelId, mailId) => {
       { _id: mailId },
       { $pull: { labelIds: labelId } }
     );
+    await touchMailViews([mailId]);
     return true;
   }
 
@@ -221,8 +331,10 @@ module.exports = {
   getLabelById,
   deleteLabelById,
   addMailToLabel,
+  addMailsToLabel,
   editLabel,
   labelNameExists,
   getLabelWithMails,
+  listLabelMailsPage,
   removeMailFromLabel
 };
\ No newline at end of file
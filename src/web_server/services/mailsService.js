@@ -2,9 +2,11 @@ const { extractUrls, checkUrl } = require('../utils/mailUtils');
 const blacklist = require('../models/blacklistModel');
 const Mail = require('../models/mails');
 const MailUserView = require('../models/mailUserView');
+const MailTombstone = require('../models/mailTombstone');
 const mongoose = require('mongoose');
 const Label = require('../models/labels');
-const { dedupeByMailId } = require('../utils/mailUtils');
+const labelsService = require('./labelsService');
+const { dedupeByMailId, comesFirst, encodeCursor, decodeCursor } = require('../utils/mailUtils');
 const REAL_FOLDERS = ['inbox', 'sent', 'draft', 'spam'];
 const User = require('../models/userModel');
 
@@ -88,7 +90,8 @@ const createMail = async ({ sender, recipient, subject, bodyPreview, status = 'd
     status: senderViewStatus,
     folder: senderFolder,
     read: senderViewStatus === 'sent',
-    starred: false
+    starred: false,
+    timestamp: now
   });
 
   //  RECIPIENT’s view only on real sends
@@ -99,14 +102,16 @@ const createMail = async ({ sender, recipient, subject, bodyPreview, status = 'd
       status: finalStatus,
       folder: finalStatus === 'spam' ? 'spam' : 'inbox',
       read: false,
-      starred: false
+      starred: false,
+      timestamp: now
     });
   }
 
   return mail;
 };
 
-const getMailById = async (username, mailId) => {
+// markRead: false leaves the view unread, for clients fetching ahead of the user
+const getMailById = async (username, mailId, { markRead = true } = {}) => {
   if (!mongoose.isValidObjectId(mailId)) {
     throw new Error(`Invalid mailId passed to getMailById: ${mailId}`);
   }
@@ -122,7 +127,7 @@ const getMailById = async (username, mailId) => {
   const mail = view.mailId;
 
   // Mark as read if recipient and unread
-  if (!view.read && mail.to === username) {
+  if (markRead && !view.read && mail.to === username) {
     await MailUserView.updateOne(
       { _id: view._id },
       { read: true }
@@ -143,6 +148,7 @@ const getMailById = async (username, mailId) => {
     read: view.read,
     starred: view.starred,
     status: view.status,
+    updatedAt: view.updatedAt,
     fromPicture
   };
 };
@@ -166,6 +172,8 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
   }
   if (attachments !== undefined) mail.attachments = attachments;
   await mail.save();
+  // the content lives on the mail, bump the views so delta sync sees the edit
+  await MailUserView.updateMany({ mailId: mail._id }, { $set: { updatedAt: new Date() } }, { timestamps: false });
 
   // if still draft, just save and return
   if (status === 'draft') {
@@ -188,6 +196,7 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
   draftView.status = 'sent';
   draftView.folder = 'sent';
   draftView.read = true;
+  draftView.timestamp = now;
   await draftView.save();
 
   // decide recipient folder/status
@@ -205,7 +214,8 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
       status: recipientStat,
       folder: recipientFold,
       read: false,
-      starred: false
+      starred: false,
+      timestamp: now
     });
 
   } else {
@@ -219,6 +229,7 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
       existing.status = recipientStat;
       existing.folder = recipientFold;
       existing.read = false;
+      existing.timestamp = now;
       await existing.save();
     } else {
       await MailUserView.create({
@@ -227,7 +238,8 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
         status: recipientStat,
         folder: recipientFold,
         read: false,
-        starred: false
+        starred: false,
+        timestamp: now
       });
     }
   }
@@ -235,42 +247,137 @@ const updateMailById = async (username, mailId, { to, recipient, subject, bodyPr
   return mail;
 };
 
-const getTrash = async (username, page = 0, limit = 30) => {
-  // Count & fetch views in parallel, with mailId populated
-  const [total, views] = await Promise.all([
-    MailUserView.countDocuments({
-      username,
-      folder: 'trash'
-    }),
-    MailUserView.find({
-      username,
-      folder: 'trash'
-    })
-      .skip(page * limit)
-      .limit(limit)
+// Folder listings are ordered by (timestamp, _id) descending, which the
+// MailUserView index covers. The cursor is an opaque token for the last view
+// of a page, so the next page is an index range scan whatever its depth.
+const FOLDER_SORT = { timestamp: -1, _id: -1 };
+
+// Shape a populated view into the mail payload of folder listings
+const toFolderMail = (view) => {
+  const { mailId: mail, read, starred, folder, status } = view;
+  const { timestamp, ...mailWithoutTimestamp } = mail;
+  return { timestamp, ...mailWithoutTimestamp, read, starred, folder, status };
+};
+
+// Views of filter that sort after the given view (or cursor position)
+const afterView = (filter, after) => {
+  if (!after) return filter;
+  return {
+    ...filter,
+    $or: [
+      { timestamp: { $lt: after.timestamp } },
+      { timestamp: after.timestamp, _id: { $lt: after._id } }
+    ]
+  };
+};
+
+// Keep only the views that come first for their mail in FOLDER_SORT order. A mail
+// is always listed through that view, so it never repeats on a later page.
+const firstViewsOnly = async (filter, views) => {
+  if (views.length === 0) return views;
+  const siblings = await MailUserView
+    .find({ ...filter, mailId: { $in: views.map(v => v.mailId._id) } }, { mailId: 1, timestamp: 1 })
+    .lean();
+  const first = new Map();
+  for (const sibling of siblings) {
+    const key = sibling.mailId.toString();
+    const best = first.get(key);
+    if (!best || comesFirst(sibling, best)) first.set(key, sibling);
+  }
+  return views.filter(v => first.get(v.mailId._id.toString())._id.toString() === v._id.toString());
+};
+
+// Mails behind the views of filter, a self-sent mail counted once
+const countMails = async (filter) => {
+  const [result] = await MailUserView.aggregate([
+    { $match: filter },
+    { $group: { _id: '$mailId' } },
+    { $count: 'total' }
+  ]);
+  return result ? result.total : 0;
+};
+
+const listViewsPage = async (filter, { page = 0, limit = 30, cursor, dedupe = false }) => {
+  // legacy page-number clients skip views, cursor clients continue after a view
+  let after = cursor ? decodeCursor(cursor) : null;
+  let skip = !cursor && page > 0 ? page * limit : 0;
+
+  // the total is only counted for the first request, cursor pages stay O(limit)
+  const totalPromise = cursor ? undefined : (dedupe ? countMails(filter) : MailUserView.countDocuments(filter));
+
+  // Views without a mail, and with dedupe the second view of a mail, are dropped
+  // before the limit, so fetch batches until a full page (plus one) is found
+  const pageViews = [];
+  while (pageViews.length <= limit) {
+    const batch = await MailUserView.find(afterView(filter, after))
+      .sort(FOLDER_SORT)
+      .skip(skip)
+      .limit(limit + 1)
       .populate('mailId')
+      .lean();
+    if (batch.length === 0) break;
+    skip = 0;
+    after = batch[batch.length - 1];
+
+    let live = batch.filter(v => v.mailId);
+    if (dedupe) live = await firstViewsOnly(filter, live);
+    pageViews.push(...live);
+    if (batch.length <= limit) break; // the filter has no more views
+  }
+
+  // one extra view tells whether another page exists
+  const hasMore = pageViews.length > limit;
+  const mails = pageViews.slice(0, limit);
+  const nextCursor = hasMore ? encodeCursor(mails[mails.length - 1]) : null;
+
+  return { page, limit, total: await totalPromise, nextCursor, mails: mails.map(toFolderMail) };
+};
+
+// Delta sync: changes are looked up by updatedAt, the token is the server clock
+// when the previous sync ran. A short overlap covers writes still in flight then;
+// applying a change twice is harmless.
+const SYNC_OVERLAP_MS = 5000;
+const MAX_SYNC_CHANGES = 500;
+
+const getChangesSince = async (username, since) => {
+  const now = Date.now();
+  const sinceMs = Number(since);
+  const token = String(now);
+
+  // no token, a malformed one or one older than the tombstones we keep:
+  // the client has to reload its folders
+  if (!since || !Number.isFinite(sinceMs) || sinceMs < now - MailTombstone.TTL_MS) {
+    return { token, reset: true, mails: [], tombstones: [] };
+  }
+
+  const after = new Date(sinceMs - SYNC_OVERLAP_MS);
+  const [views, tombstones] = await Promise.all([
+    MailUserView.find({ username, updatedAt: { $gt: after } })
+      .sort({ updatedAt: 1 })
+      .limit(MAX_SYNC_CHANGES + 1)
+      .populate('mailId')
+      .lean(),
+    MailTombstone.find({ username, deletedAt: { $gt: after } })
+      .sort({ deletedAt: 1 })
+      .limit(MAX_SYNC_CHANGES + 1)
       .lean()
   ]);
 
-  // Sort newest‐first by mail.timestamp
-  views.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
+  // a delta that large costs more than reloading the visible folder
+  if (views.length > MAX_SYNC_CHANGES || tombstones.length > MAX_SYNC_CHANGES) {
+    return { token, reset: true, mails: [], tombstones: [] };
+  }
 
-  // Map each view to its mail + metadata
-  const mails = views.map(view => {
-    const mail = view.mailId;
-    const { timestamp, ...mailWithoutTimestamp } = mail;
-    const { read, starred, folder, status } = view;
-    return {
-      timestamp,
-      ...mailWithoutTimestamp,
-      read,
-      starred,
-      folder,
-      status
-    };
-  });
+  return {
+    token,
+    reset: false,
+    mails: views.filter(v => v.mailId).map(toFolderMail),
+    tombstones: tombstones.map(t => ({ _id: t.mailId, folder: t.folder, deletedAt: t.deletedAt.getTime() }))
+  };
+};
 
-  return { page, limit, total, mails };
+const getTrash = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage({ username, folder: 'trash' }, { page, limit, cursor });
 };
 
 
@@ -283,13 +390,14 @@ const deleteMailById = async (username, mailId) => {
   // Extract only the folder names
   const originalFolders = originalViews.map(v => v.folder)
     .filter(f => ['inbox', 'sent', 'draft', 'spam'].includes(f));
-  const { status, read, starred } = originalViews[0];
+  const { status, read, starred, timestamp } = originalViews[0];
 
   // Delete those views
   await MailUserView.deleteMany({
     username,
     mailId: mailObjectId
   });
+  await MailTombstone.record(originalViews);
 
   // Clean up labels
   await Label.updateMany(
@@ -305,6 +413,7 @@ const deleteMailById = async (username, mailId) => {
     status,
     read,
     starred,
+    timestamp,
     originalFolders,
     deletedAt: Date.now()
   });
@@ -350,6 +459,59 @@ const searchMailsByUser = async (username, query) => {
   }));
 };
 
+// Paged variant of searchMailsByUser. Views are streamed newest first and the
+// scan stops as soon as a page worth of matches is found, so a page costs
+// roughly limit / hit-rate documents instead of the whole mailbox.
+const searchMailsPage = async (username, query, { limit = 30, cursor } = {}) => {
+  const words = query.toLowerCase().trim().split(/\s+/);
+  const filter = { username, folder: { $in: ['inbox', 'sent', 'draft'] } };
+  if (cursor) {
+    const after = decodeCursor(cursor);
+    filter.$or = [
+      { timestamp: { $lt: after.timestamp } },
+      { timestamp: after.timestamp, _id: { $lt: after._id } }
+    ];
+  }
+
+  const matches = [];
+  const seen = new Set();
+  let last = null;
+  let hasMore = false;
+  const views = MailUserView.find(filter).sort(FOLDER_SORT).populate('mailId').lean().cursor();
+  try {
+    for await (const v of views) {
+      if (!v.mailId) continue;
+      const text = [
+        v.mailId.to,
+        v.mailId.from,
+        v.mailId.fromName,
+        v.mailId.subject,
+        v.mailId.bodyPreview
+      ].map(s => (s || '').toLowerCase()).join(' ');
+      if (!words.every(w => text.includes(w))) continue;
+
+      if (matches.length === limit) {
+        // one more match exists past this page
+        hasMore = true;
+        break;
+      }
+      last = v;
+      const id = v.mailId._id.toString();
+      if (seen.has(id)) continue; // same mail in two folders of the page
+      seen.add(id);
+      matches.push(v);
+    }
+  } finally {
+    await views.close();
+  }
+
+  return {
+    limit,
+    nextCursor: hasMore ? encodeCursor(last) : null,
+    results: matches.map(toFolderMail)
+  };
+};
+
 const advancedSearchMails = async (username, searchParams) => {
   // 1) No params → empty
   if (!searchParams.subject && !searchParams.from && !searchParams.to && !searchParams.content) {
@@ -447,6 +609,18 @@ const toggleStarred = async (username, mailId) => {
   return { mail: _id, starred: newValue };
 };
 
+// Sets the given flags ({ starred } and/or { read }) on every view of the mail.
+// Unlike toggleStarred, repeating or reordering the same request cannot flip the state.
+const setMailFlags = async (username, mailId, flags) => {
+  if (!mongoose.isValidObjectId(mailId)) return null;
+  const _id = new mongoose.Types.ObjectId(mailId);
+
+  const result = await MailUserView.updateMany({ username, mailId: _id }, { $set: flags });
+  if (!result.matchedCount) return null;
+
+  return { mailId: _id, ...flags };
+};
+
 
 const permanentlyDeleteFromTrash = async (username, mailId) => {
   const mailObjectId = new mongoose.Types.ObjectId(mailId);
@@ -461,6 +635,7 @@ const permanentlyDeleteFromTrash = async (username, mailId) => {
     // nothing to delete for this user
     return false;
   }
+  await MailTombstone.record([{ username, mailId: mailObjectId, folder: 'trash' }]);
 
   // Remove from this user’s labels
   await Label.updateMany(
@@ -479,10 +654,12 @@ const permanentlyDeleteFromTrash = async (username, mailId) => {
 };
 
 const emptyTrash = async (username) => {
+  const trashViews = await MailUserView.find({ username, folder: 'trash' }, { username: 1, mailId: 1, folder: 1 }).lean();
   const result = await MailUserView.deleteMany({
     username,
     folder: 'trash'
   });
+  await MailTombstone.record(trashViews);
 
   return result.deletedCount;
 };
@@ -499,10 +676,11 @@ const restoreMailFromTrash = async (username, mailId) => {
 
   if (!trashView) return false;
 
-  const { status, read, starred, originalFolders } = trashView;
+  const { status, read, starred, timestamp, originalFolders } = trashView;
 
   // Remove the trash view
   await MailUserView.deleteOne({ _id: trashView._id });
+  await MailTombstone.record([trashView]);
 
   // Re-create one view per original folder
   const creations = originalFolders.map(folder =>
@@ -512,7 +690,8 @@ const restoreMailFromTrash = async (username, mailId) => {
       folder,
       status,
       read,
-      starred
+      starred,
+      timestamp
     })
   );
   await Promise.all(creations);
@@ -536,6 +715,7 @@ const reportAsSpam = async (username, mailId) => {
 
   // Remove the original inbox/sent view
   await MailUserView.deleteOne({ _id: viewId });
+  await MailTombstone.record([{ username, mailId: mail._id, folder: view.folder }]);
 
   // Create the new spam view
   await MailUserView.create({
@@ -545,6 +725,7 @@ const reportAsSpam = async (username, mailId) => {
     status: 'spam',
     read,
     starred,
+    timestamp: mail.timestamp,
     deletedAt: null
   });
 
@@ -595,6 +776,9 @@ const unspam = async (username, mailId) => {
     }
   }
 
+  // The view leaves spam whichever folder it is restored to
+  await MailTombstone.record([{ username, mailId: mail._id, folder: 'spam' }]);
+
   // Now decide where to restore
   if (mail.to === mail.from) {
     // Self-sent: restore this view to inbox...
@@ -615,7 +799,8 @@ const unspam = async (username, mailId) => {
         folder: 'sent',
         status: 'sent',
         read: true,
-        starred: view.starred
+        starred: view.starred,
+        timestamp: mail.timestamp
       });
     }
 
@@ -638,202 +823,38 @@ const unspam = async (username, mailId) => {
 };
 
 
-const getSpam = async (username, page = 0, limit = 30) => {
-  const [total, views] = await Promise.all([
-    MailUserView.countDocuments({ username, folder: 'spam' }),
-    MailUserView.find({ username, folder: 'spam' })
-      .skip(page * limit)
-      .limit(limit)
-      .populate('mailId')
-      .lean()
-  ]);
-  views.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  return {
-    page,
-    limit,
-    total,
-    mails: views.map(view => {
-      const { mailId: mail, read, starred, folder, status } = view;
-      const { timestamp, ...mailWithoutTimestamp } = mail;
-      return {
-        timestamp,
-        ...mailWithoutTimestamp,
-        read,
-        starred,
-        folder,
-        status
-      };
-    })
-  };
+const getSpam = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage({ username, folder: 'spam' }, { page, limit, cursor });
 };
 
 
-const getDrafts = async (username, page = 0, limit = 30) => {
-  const [total, views] = await Promise.all([
-    MailUserView.countDocuments({ username, folder: 'draft' }),
-    MailUserView.find({ username, folder: 'draft' })
-      .skip(page * limit)
-      .limit(limit)
-      .populate('mailId')
-      .lean()
-  ]);
-
-  views.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  const mails = views.map(view => {
-    const { mailId: mail, read, starred, folder, status } = view;
-    const { timestamp, ...mailWithoutTimestamp } = mail;
-    return {
-      timestamp,
-      ...mailWithoutTimestamp,
-      read,
-      starred,
-      folder,
-      status
-    };
-  });
-
-  return { page, limit, total, mails };
+const getDrafts = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage({ username, folder: 'draft' }, { page, limit, cursor });
 };
 
 
-const getInbox = async (username, page = 0, limit = 30) => {
-  const allViews = await MailUserView.find({ username, folder: 'inbox' })
-    .populate('mailId')
-    .lean();
-
-  allViews.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  const total = allViews.length;
-  const start = page * limit;
-  const end = start + limit;
-  const slice = allViews.slice(start, end);
-
-  const mails = slice.map(view => {
-    const { mailId: mail, read, starred, folder, status } = view;
-    const { timestamp, ...mailWithoutTimestamp } = mail;
-    return {
-      timestamp,
-      ...mailWithoutTimestamp,
-      read,
-      starred,
-      folder,
-      status
-    };
-  });
-
-  return { page, limit, total, mails };
+const getInbox = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage({ username, folder: 'inbox' }, { page, limit, cursor });
 };
 
 
-const getSent = async (username, page = 0, limit = 30) => {
-  const views = await MailUserView.find({ username, folder: 'sent' })
-    .populate('mailId')
-    .lean();
-
-  // 2. Sort by mail.timestamp DESC (newest first)
-  views.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  // 3. Manual pagination
-  const total = views.length;
-  const start = page * limit;
-  const end = start + limit;
-  const slice = views.slice(start, end);
-
-  const mails = slice.map(view => {
-    const { mailId: mail, read, starred, folder, status } = view;
-    const { timestamp, ...mailWithoutTimestamp } = mail;
-    return {
-      timestamp,
-      ...mailWithoutTimestamp,
-      read,
-      starred,
-      folder,
-      status
-    };
-  });
-
-  return { page, limit, total, mails };
+const getSent = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage({ username, folder: 'sent' }, { page, limit, cursor });
 };
 
-const getStarredMails = async (username, page = 0, limit = 30) => {
-  //fetch all starred views in real folders
-  const views = await MailUserView.find({
-    username,
-    starred: true,
-    folder: { $in: REAL_FOLDERS }
-  })
-    .populate('mailId')
-    .lean();
-
-  // sort by timestamp descending
-  views.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  // dedupe so we only keep the first view per mailId
-  const seen = new Set();
-  const unique = [];
-  for (const v of views) {
-    const id = v.mailId._id.toString();
-    if (!seen.has(id)) {
-      seen.add(id);
-      unique.push(v);
-    }
-  }
-
-  // paginate
-  const total = unique.length;
-  const slice = unique.slice(page * limit, page * limit + limit);
-  //  shape the response
-  const mails = slice.map(v => {
-    const { mailId: mail, read, starred, folder, status } = v;
-    const { timestamp, ...rest } = mail;
-    return { timestamp, ...rest, read, starred, folder, status };
-  });
-
-  return { page, limit, total, mails };
+const getStarredMails = async (username, page = 0, limit = 30, cursor) => {
+  // a self-sent mail has one view per folder, keep only the first one
+  return listViewsPage(
+    { username, starred: true, folder: { $in: REAL_FOLDERS } },
+    { page, limit, cursor, dedupe: true }
+  );
 };
 
-const getAllMails = async (username, page = 0, limit = 30) => {
-  const folders = ['inbox', 'sent', 'draft'];
-  const views = await MailUserView.find({
-    username,
-    folder: { $in: folders }
-  })
-    .populate('mailId')
-    .lean();
-
-  // Deduplicate by mail._id
-  const seen = new Set();
-  const unique = views.filter(view => {
-    const id = String(view.mailId._id);
-    if (seen.has(id)) return false;
-    seen.add(id);
-    return true;
-  });
-
-  // Sort by mail.timestamp descending
-  unique.sort((a, b) => b.mailId.timestamp - a.mailId.timestamp);
-
-  const total = unique.length;
-  const start = page * limit;
-  const end = start + limit;
-
-  const slice = unique.slice(start, end);
-  const mails = slice.map(view => {
-    const { mailId: mail, read, starred, folder, status } = view;
-    const { timestamp, ...mailWithoutTimestamp } = mail;
-    return {
-      timestamp,
-      ...mailWithoutTimestamp,
-      read,
-      starred,
-      folder,
-      status
-    };
-  });
-
-  return { page, limit, total, mails };
+const getAllMails = async (username, page = 0, limit = 30, cursor) => {
+  return listViewsPage(
+    { username, folder: { $in: ['inbox', 'sent', 'draft'] } },
+    { page, limit, cursor, dedupe: true }
+  );
 };
 
 const isMailStarred = async (username, mailId) => {
@@ -847,6 +868,61 @@ const isMailStarred = async (username, mailId) => {
 };
 
 
+// Bulk actions of the selection mode. Flag updates and labeling are single
+// queries; moves reuse the per-mail logic but still cost one HTTP request.
+const BATCH_OPERATIONS = ['trash', 'delete', 'restore', 'spam', 'unspam', 'star', 'unstar', 'read', 'label'];
+const MAX_BATCH_SIZE = 500;
+
+const batchMutate = async (username, op, ids, { labelId } = {}) => {
+  const results = new Map();
+  const validIds = [];
+  for (const id of ids) {
+    if (mongoose.isValidObjectId(id)) validIds.push(String(id));
+    else results.set(String(id), { id, ok: false, error: 'Invalid mail id' });
+  }
+
+  if (['star', 'unstar', 'read', 'label'].includes(op)) {
+    const objectIds = validIds.map(id => new mongoose.Types.ObjectId(id));
+    // only mails this user has a view of
+    const owned = (await MailUserView.distinct('mailId', { username, mailId: { $in: objectIds } }));
+    const ownedSet = new Set(owned.map(String));
+
+    if (op === 'label') {
+      const labeled = await labelsService.addMailsToLabel(username, labelId, owned);
+      if (!labeled) throw { status: 404, error: 'Label not found' };
+    } else {
+      const update = op === 'read' ? { read: true } : { starred: op === 'star' };
+      await MailUserView.updateMany({ username, mailId: { $in: owned } }, { $set: update });
+    }
+
+    for (const id of validIds) {
+      results.set(id, ownedSet.has(id) ? { id, ok: true } : { id, ok: false, error: 'Mail not found' });
+    }
+  } else {
+    const perMail = {
+      trash: deleteMailById,
+      delete: permanentlyDeleteFromTrash,
+      restore: restoreMailFromTrash,
+      spam: reportAsSpam,
+      unspam
+    }[op];
+
+    for (const id of validIds) {
+      try {
+        const done = await perMail(username, id);
+        results.set(id, done ? { id, ok: true } : { id, ok: false, error: 'Mail not found' });
+      } catch (err) {
+        results.set(id, { id, ok: false, error: err.error || err.message || 'Failed' });
+      }
+    }
+  }
+
+  // keep the order of the request
+  const ordered = ids.map(id => results.get(String(id)));
+  const succeeded = ordered.filter(r => r.ok).length;
+  return { op, succeeded, failed: ordered.length - succeeded, results: ordered };
+};
+
 
 module.exports = {
   listMailsByUser,
@@ -855,8 +931,10 @@ module.exports = {
   updateMailById,
   deleteMailById,
   searchMailsByUser,
+  searchMailsPage,
   advancedSearchMails,
   toggleStarred,
+  setMailFlags,
   getTrash,
   permanentlyDeleteFromTrash,
   emptyTrash,
@@ -869,5 +947,9 @@ module.exports = {
   getSent,
   getStarredMails,
   getAllMails,
+  getChangesSince,
+  batchMutate,
+  BATCH_OPERATIONS,
+  MAX_BATCH_SIZE,
   isMailStarred
 };
\ No newline at end of file
@@ -9,6 +9,8 @@ if (!uri) {
 mongoose
   .connect(process.env.MONGODB_URI)
   .then(() => console.log(' MongoDB connected', mongoose.connection.name))
+  .then(() => require('../models/mailUserView').backfillTimestamps())
+  .then(count => count && console.log(` Backfilled timestamps of ${count} mail views`))
   .catch(err => {
     console.error(' MongoDB connection error:', err);
     process.exit(1);
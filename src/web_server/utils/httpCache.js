@@ -0,0 +1,21 @@
+// HTTP revalidation for per-user GET endpoints.
+// Express already puts an ETag on every res.json body and answers a matching
+// If-None-Match with 304 and no body. Responses carry the user's data, so they
+// may only live in a private cache and must be revalidated on every use.
+function revalidate(req, res, next) {
+  if (req.method === 'GET') {
+    res.set('Cache-Control', 'private, no-cache, must-revalidate');
+    res.vary('Authorization');
+  }
+  next();
+}
+
+// Last-Modified from the newest of the given dates; ignores missing ones
+function setLastModified(res, ...dates) {
+  const times = dates.flat().filter(Boolean).map(d => new Date(d).getTime()).filter(t => !isNaN(t));
+  if (times.length > 0) {
+    res.set('Last-Modified', new Date(Math.max(...times)).toUTCString());
+  }
+}
+
+module.exports = { revalidate, setLastModified };
@@ -1,8 +1,12 @@
 const { findUserById } = require('../models/userModel');
 const sessions = require('../models/sessions');
 const net = require('net');
+const mongoose = require('mongoose');
 const MailUserView = require('../models/mailUserView');
 
+const DEFAULT_PAGE_LIMIT = 30;
+const MAX_PAGE_LIMIT = 100;
+
 const IP = process.env.CPP_SERVER_IP || '127.0.0.1';
 const PORT = parseInt(process.env.CPP_SERVER_PORT, 10) || 12345;
 
@@ -134,6 +138,33 @@ async function paginateMails({ username, folder, pageQuery }) {
   };
 }
 
+// Read ?page=&limit= from a request, clamping limit to a sane page size
+function parsePaging(query = {}) {
+  const page = Math.max(0, parseInt(query.page) || 0);
+  const limit = Math.min(MAX_PAGE_LIMIT, Math.max(1, parseInt(query.limit) || DEFAULT_PAGE_LIMIT));
+  // an opaque keyset cursor from a previous response takes precedence over page
+  const cursor = typeof query.cursor === 'string' && query.cursor ? query.cursor : undefined;
+  return { page, limit, cursor };
+}
+
+// Keyset cursors: an opaque token for the last document of a page, sorted by
+// { timestamp: -1, _id: -1 }
+const encodeCursor = (doc) =>
+  Buffer.from(`${doc.timestamp}:${doc._id}`).toString('base64url');
+
+const decodeCursor = (cursor) => {
+  const [timestamp, id] = Buffer.from(String(cursor), 'base64url').toString().split(':');
+  if (!timestamp || isNaN(Number(timestamp)) || !mongoose.isValidObjectId(id)) {
+    throw { status: 400, error: 'Invalid cursor.' };
+  }
+  return { timestamp: Number(timestamp), _id: new mongoose.Types.ObjectId(id) };
+};
+
+// Whether view a sorts before view b in { timestamp: -1, _id: -1 } order; the
+// view that sorts first is the one a mail with several views is listed through
+const comesFirst = (a, b) =>
+  a.timestamp > b.timestamp || (a.timestamp === b.timestamp && a._id.toString() > b._id.toString());
+
 function dedupeByMailId(views) {
   const seen = new Set();
   return views.filter(v => {
@@ -152,5 +183,9 @@ module.exports = {
   sendRequest,
   sortByRecent,
   dedupeByMailId,
-  paginateMails
+  comesFirst,
+  paginateMails,
+  parsePaging,
+  encodeCursor,
+  decodeCursor
 };
\ No newline at end of file